@@ -0,0 +1,47 @@
+package com.example.gateway.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.Collection;
+
+/**
+ * Signs the compact identity header forwarded to downstream services once the edge has verified a JWT.
+ * Format: {@code base64url(userId|iat|exp|ROLE,ROLE|ver|email) "." base64url(HMAC-SHA256)}.
+ * Users verifies it with the same {@code gateway.identity.secret} and checks {@code ver}, the token
+ * version claim, against the user's current one so revoked tokens are refused behind the Gateway too.
+ */
+@Component
+public class IdentityHeaderSigner {
+
+	private final SecretKeySpec key;
+
+	public IdentityHeaderSigner(@Value("${gateway.identity.secret}") String secret) {
+		this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+	}
+
+	public String sign(Object userId, long issuedAtSeconds, long expiresAtSeconds, Collection<?> roles,
+					   int tokenVersion, String email) {
+		String payload = userId + "|" + issuedAtSeconds + "|" + expiresAtSeconds + "|"
+				+ String.join(",", roles.stream().map(Object::toString).toList()) + "|" + tokenVersion + "|" + email;
+		byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+
+		Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+		return encoder.encodeToString(payloadBytes) + "." + encoder.encodeToString(hmac(payloadBytes));
+	}
+
+	private byte[] hmac(byte[] data) {
+		try {
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(key);
+			return mac.doFinal(data);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("Unable to sign identity header", e);
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package com.example.gateway.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.security.PublicKey;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Public keys fetched from the Users JWKS endpoint and kept in memory, so tokens are verified locally.
+ * The set is refetched when a token names an unknown kid (a key was rotated in) and when it is older
+ * than {@code gateway.jwt.jwks-max-age}, but never more often than {@code gateway.jwt.jwks-min-refresh-interval}.
+ */
+@Component
+public class JwksKeyCache {
+
+	private static final Logger log = LoggerFactory.getLogger(JwksKeyCache.class);
+
+	private final WebClient webClient;
+	private final String jwksUri;
+	private final Duration maxAge;
+	private final Duration minRefreshInterval;
+
+	private volatile Map<String, PublicKey> keys = Map.of();
+	private volatile long lastFetchMillis;
+	private volatile long lastAttemptMillis;
+
+	// Concurrent refreshes share a single request
+	private final AtomicReference<Mono<Void>> refreshInFlight = new AtomicReference<>();
+
+	public JwksKeyCache(WebClient.Builder webClientBuilder,
+						@Value("${gateway.jwt.jwks-uri}") String jwksUri,
+						@Value("${gateway.jwt.jwks-max-age:PT15M}") Duration maxAge,
+						@Value("${gateway.jwt.jwks-min-refresh-interval:PT10S}") Duration minRefreshInterval) {
+		this.webClient = webClientBuilder.build();
+		this.jwksUri = jwksUri;
+		this.maxAge = maxAge;
+		this.minRefreshInterval = minRefreshInterval;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void preload() {
+		refresh().subscribe();
+	}
+
+	// Returns null for unknown key ids
+	public PublicKey get(String kid) {
+		if (System.currentTimeMillis() - lastFetchMillis > maxAge.toMillis()) {
+			refresh().subscribe();
+		}
+		return keys.get(kid);
+	}
+
+	public Mono<Void> refresh() {
+		Mono<Void> inFlight = refreshInFlight.get();
+		if (inFlight != null) {
+			return inFlight;
+		}
+		if (System.currentTimeMillis() - lastAttemptMillis < minRefreshInterval.toMillis()) {
+			return Mono.empty();
+		}
+
+		Mono<Void> fetch = webClient.get()
+				.uri(jwksUri)
+				.retrieve()
+				.bodyToMono(String.class)
+				.doOnSubscribe(subscription -> lastAttemptMillis = System.currentTimeMillis())
+				.doOnNext(json -> {
+					keys = parse(json);
+					lastFetchMillis = System.currentTimeMillis();
+				})
+				.doOnError(e -> log.warn("Unable to fetch JWKS from {}: {}", jwksUri, e.getMessage()))
+				.onErrorResume(e -> Mono.empty())
+				.then()
+				.doFinally(signal -> refreshInFlight.set(null))
+				.cache();
+
+		if (refreshInFlight.compareAndSet(null, fetch)) {
+			return fetch;
+		}
+		Mono<Void> other = refreshInFlight.get();
+		return other != null ? other : Mono.empty();
+	}
+
+	private static Map<String, PublicKey> parse(String json) {
+		try {
+			Map<String, PublicKey> parsed = new HashMap<>();
+			for (JWK jwk : JWKSet.parse(json).getKeys()) {
+				if (jwk instanceof ECKey ecKey && jwk.getKeyID() != null) {
+					parsed.put(jwk.getKeyID(), ecKey.toECPublicKey());
+				}
+			}
+			return Map.copyOf(parsed);
+		} catch (ParseException | JOSEException e) {
+			throw new IllegalStateException("Invalid JWKS document", e);
+		}
+	}
+}
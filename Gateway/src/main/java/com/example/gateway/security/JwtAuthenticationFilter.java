@@ -0,0 +1,253 @@
+package com.example.gateway.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Verifies bearer tokens at the edge, on the event loop, before anything is routed to Users.
+ * ES256 tokens are checked against the keys published by Users' JWKS endpoint.
+ * Protected paths without a valid token are rejected with 401. Verified requests are forwarded
+ * with a signed identity header so Users does not have to verify the token again.
+ */
+@Component
+public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
+
+	// Marks a token signed with a kid the cached JWKS does not know yet
+	private static final VerifiedToken UNKNOWN_KEY = new VerifiedToken(null, 0);
+
+	private final JwtParser parser;
+	private final JwksKeyCache jwksKeyCache;
+	// HMAC key of legacy tokens without a kid header (null when jwt.secret is unset)
+	private final Key legacySecretKey;
+	private final IdentityHeaderSigner identityHeaderSigner;
+	private final String identityHeader;
+	private final List<String> publicPaths;
+	private final Duration invalidTokenTtl;
+
+	// Verification results keyed by token digest: valid tokens until their exp, tokens with a bad
+	// signature, expiry or claims briefly. An unknown kid is never cached, see verify
+	private final Cache<String, VerifiedToken> verifiedTokens;
+
+	public JwtAuthenticationFilter(@Value("${jwt.secret:}") String legacySecret,
+								   @Value("${gateway.identity.header:X-Authenticated-User}") String identityHeader,
+								   @Value("${gateway.auth.public-paths:/api/auth/}") List<String> publicPaths,
+								   @Value("${gateway.auth.cache.maximum-size:10000}") long maximumSize,
+								   @Value("${gateway.auth.cache.max-ttl:PT15M}") Duration maxTtl,
+								   @Value("${gateway.auth.cache.invalid-token-ttl:PT1M}") Duration invalidTokenTtl,
+								   JwksKeyCache jwksKeyCache,
+								   IdentityHeaderSigner identityHeaderSigner) {
+		// Same key derivation as the Users service
+		this.legacySecretKey = legacySecret.isBlank()
+				? null
+				: Keys.hmacShaKeyFor(Base64.getEncoder().encode(legacySecret.getBytes()));
+		this.jwksKeyCache = jwksKeyCache;
+		this.parser = Jwts.parserBuilder().setSigningKeyResolver(new KidSigningKeyResolver()).build();
+		this.identityHeaderSigner = identityHeaderSigner;
+		this.identityHeader = identityHeader;
+		this.publicPaths = publicPaths;
+		this.invalidTokenTtl = invalidTokenTtl;
+		this.verifiedTokens = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfter(new VerifiedTokenExpiry(maxTtl.toNanos()))
+				.build();
+	}
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+		ServerHttpRequest request = exchange.getRequest();
+		String path = request.getPath().pathWithinApplication().value();
+
+		String authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+		Mono<VerifiedToken> verified = authorization != null && authorization.startsWith("Bearer ")
+				? verify(authorization.substring(7))
+				: Mono.just(new VerifiedToken(null, 0));
+
+		return verified.flatMap(token -> {
+			String identity = token.identity();
+
+			// Public paths (login, register, ...) go through with or without a token
+			if (identity == null && !isPublicPath(path)) {
+				exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
+				exchange.getResponse().getHeaders().set(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+				return exchange.getResponse().setComplete();
+			}
+
+			// Never forward a client-supplied identity header
+			ServerHttpRequest forwarded = request.mutate()
+					.headers(headers -> {
+						headers.remove(identityHeader);
+						if (identity != null) {
+							headers.set(identityHeader, identity);
+						}
+					})
+					.build();
+			return chain.filter(exchange.mutate().request(forwarded).build());
+		});
+	}
+
+	@Override
+	public int getOrder() {
+		// Before routing and load balancing
+		return Ordered.HIGHEST_PRECEDENCE + 100;
+	}
+
+	private Mono<VerifiedToken> verify(String token) {
+		String key = digest(token);
+		VerifiedToken cached = verifiedTokens.getIfPresent(key);
+		if (cached != null) {
+			return Mono.just(cached);
+		}
+
+		VerifiedToken verified = verifyNow(token);
+		if (verified != UNKNOWN_KEY) {
+			verifiedTokens.put(key, verified);
+			return Mono.just(verified);
+		}
+
+		// Signed with a key we have not seen yet, most likely rotated in: refetch the JWKS and retry once
+		return jwksKeyCache.refresh().then(Mono.fromSupplier(() -> {
+			VerifiedToken retried = verifyNow(token);
+			if (retried == UNKNOWN_KEY) {
+				// Rejected but not cached: the refresh may have failed (Users down) or been skipped by the
+				// rate limit, and the key can still turn up on the next one
+				return invalid();
+			}
+			verifiedTokens.put(key, retried);
+			return retried;
+		}));
+	}
+
+	private VerifiedToken verifyNow(String token) {
+		try {
+			Claims claims = parser.parseClaimsJws(token).getBody();
+			Object userId = claims.get("id");
+			Object roles = claims.get("roles");
+			// Tokens issued before token versions have no ver claim (version 0)
+			Object version = claims.get("ver");
+			if (claims.getExpiration() == null || userId == null || claims.getSubject() == null
+					|| (roles != null && !isRoleList(roles)) || (version != null && !(version instanceof Number))) {
+				return invalid();
+			}
+			long expiresAt = claims.getExpiration().getTime();
+			long issuedAt = claims.getIssuedAt() == null ? 0 : claims.getIssuedAt().getTime() / 1000;
+			String identity = identityHeaderSigner.sign(userId, issuedAt, expiresAt / 1000,
+					roles == null ? List.of() : (Collection<?>) roles,
+					version == null ? 0 : ((Number) version).intValue(), claims.getSubject());
+			return new VerifiedToken(identity, expiresAt);
+		} catch (UnknownKeyIdException e) {
+			return UNKNOWN_KEY;
+		} catch (JwtException | IllegalArgumentException e) {
+			return invalid();
+		}
+	}
+
+	private static boolean isRoleList(Object roles) {
+		if (!(roles instanceof Collection<?> roleNames)) {
+			return false;
+		}
+		for (Object role : roleNames) {
+			if (!(role instanceof String)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private VerifiedToken invalid() {
+		return new VerifiedToken(null, System.currentTimeMillis() + invalidTokenTtl.toMillis());
+	}
+
+	private boolean isPublicPath(String path) {
+		for (String publicPath : publicPaths) {
+			if (path.startsWith(publicPath)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String digest(String token) {
+		try {
+			MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+			return Base64.getUrlEncoder().withoutPadding()
+					.encodeToString(sha256.digest(token.getBytes(StandardCharsets.US_ASCII)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+	private class KidSigningKeyResolver extends SigningKeyResolverAdapter {
+		@Override
+		public Key resolveSigningKey(JwsHeader header, Claims claims) {
+			String kid = header.getKeyId();
+			if (kid == null) {
+				if (legacySecretKey == null) {
+					throw new UnsupportedJwtException("Token has no key id");
+				}
+				return legacySecretKey;
+			}
+			Key key = jwksKeyCache.get(kid);
+			if (key == null) {
+				throw new UnknownKeyIdException(kid);
+			}
+			return key;
+		}
+	}
+
+	private static class UnknownKeyIdException extends UnsupportedJwtException {
+		UnknownKeyIdException(String kid) {
+			super("Unknown key id: " + kid);
+		}
+	}
+
+	// identity is null when the token failed verification
+	private record VerifiedToken(String identity, long expiresAtMillis) {
+	}
+
+	private record VerifiedTokenExpiry(long maxTtlNanos) implements Expiry<String, VerifiedToken> {
+
+		@Override
+		public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+			long remainingNanos = Duration.ofMillis(value.expiresAtMillis() - System.currentTimeMillis()).toNanos();
+			return Math.max(0, Math.min(maxTtlNanos, remainingNanos));
+		}
+
+		@Override
+		public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+			return expireAfterCreate(key, value, currentTime);
+		}
+
+		@Override
+		public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+			return currentDuration;
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package com.example.gateway.security;
+
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.security.KeyPair;
+import java.security.interfaces.ECPublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class JwtAuthenticationFilterTest {
+
+	private static final String IDENTITY_HEADER = "X-Authenticated-User";
+
+	private final KeyPair currentKey = Keys.keyPairFor(SignatureAlgorithm.ES256);
+	private final KeyPair rotatedKey = Keys.keyPairFor(SignatureAlgorithm.ES256);
+	private final IdentityHeaderSigner signer = new IdentityHeaderSigner("test-identity-secret");
+
+	// What the stubbed Users JWKS endpoint serves; null while Users is down
+	private final AtomicReference<String> jwks = new AtomicReference<>();
+	private final AtomicInteger jwksFetches = new AtomicInteger();
+
+	private JwtAuthenticationFilter filter;
+
+	@BeforeEach
+	void setUp() {
+		jwks.set(jwks(jwk("current", currentKey)));
+		WebClient.Builder webClient = WebClient.builder().exchangeFunction(request -> {
+			jwksFetches.incrementAndGet();
+			String body = jwks.get();
+			if (body == null) {
+				return Mono.error(new IOException("Connection refused"));
+			}
+			return Mono.just(ClientResponse.create(HttpStatus.OK)
+					.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+					.body(body)
+					.build());
+		});
+		JwksKeyCache keyCache = new JwksKeyCache(webClient, "http://users/.well-known/jwks.json",
+				Duration.ofMinutes(15), Duration.ZERO);
+		filter = new JwtAuthenticationFilter("", IDENTITY_HEADER, List.of("/api/auth/"), 1000,
+				Duration.ofMinutes(15), Duration.ofMinutes(1), keyCache, signer);
+	}
+
+	@Test
+	void protectedPathWithoutTokenIsRejected() {
+		Result result = run(MockServerHttpRequest.get("/api/users/me"));
+
+		assertEquals(HttpStatus.UNAUTHORIZED, result.exchange.getResponse().getStatusCode());
+		assertEquals("Bearer", result.exchange.getResponse().getHeaders().getFirst(HttpHeaders.WWW_AUTHENTICATE));
+		assertNull(result.forwarded);
+	}
+
+	@Test
+	void invalidTokensAreRejected() {
+		String expired = token("current", currentKey)
+				.setExpiration(Date.from(Instant.now().minusSeconds(60)))
+				.compact();
+		String otherKey = token("current", rotatedKey).compact();
+
+		for (String token : List.of("not-a-jwt", expired, otherKey)) {
+			Result result = run(MockServerHttpRequest.get("/api/users/me").header(HttpHeaders.AUTHORIZATION, "Bearer " + token));
+			assertEquals(HttpStatus.UNAUTHORIZED, result.exchange.getResponse().getStatusCode(), token);
+			assertNull(result.forwarded, token);
+		}
+	}
+
+	@Test
+	void publicPathPassesWithoutTokenAndDropsAClientSuppliedIdentity() {
+		Result result = run(MockServerHttpRequest.get("/api/auth/login").header(IDENTITY_HEADER, "forged"));
+
+		assertNotNull(result.forwarded);
+		assertNull(result.forwarded.getRequest().getHeaders().getFirst(IDENTITY_HEADER));
+	}
+
+	@Test
+	void validTokenIsForwardedWithASignedIdentityReplacingTheClientOne() {
+		Instant expiresAt = Instant.now().plusSeconds(600);
+		Instant issuedAt = Instant.now().minusSeconds(10);
+		String token = token("current", currentKey)
+				.setIssuedAt(Date.from(issuedAt))
+				.setExpiration(Date.from(expiresAt))
+				.compact();
+
+		Result result = run(MockServerHttpRequest.get("/api/users/me")
+				.header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+				.header(IDENTITY_HEADER, "forged"));
+
+		assertNotNull(result.forwarded);
+		List<String> identity = result.forwarded.getRequest().getHeaders().get(IDENTITY_HEADER);
+		assertEquals(List.of(signer.sign(42, issuedAt.getEpochSecond(), expiresAt.getEpochSecond(),
+				List.of("CLIENT"), 3, "user@example.com")), identity);
+	}
+
+	@Test
+	void tokenSignedWithARotatedKeyIsAcceptedAfterARefresh() {
+		String token = token("rotated", rotatedKey).compact();
+		run(MockServerHttpRequest.get("/api/users/me").header(HttpHeaders.AUTHORIZATION, "Bearer " + bearerFor(currentKey)));
+
+		jwks.set(jwks(jwk("current", currentKey), jwk("rotated", rotatedKey)));
+		Result result = run(MockServerHttpRequest.get("/api/users/me").header(HttpHeaders.AUTHORIZATION, "Bearer " + token));
+
+		assertNotNull(result.forwarded);
+	}
+
+	@Test
+	void unknownKeyIsNotCachedAsInvalid() {
+		String token = token("rotated", rotatedKey).compact();
+
+		// Users is down: the refresh fails and the token is rejected for now
+		jwks.set(null);
+		Result whileDown = run(MockServerHttpRequest.get("/api/users/me").header(HttpHeaders.AUTHORIZATION, "Bearer " + token));
+		assertEquals(HttpStatus.UNAUTHORIZED, whileDown.exchange.getResponse().getStatusCode());
+
+		// Back with the new key: the same token goes through instead of staying rejected for invalid-token-ttl
+		jwks.set(jwks(jwk("current", currentKey), jwk("rotated", rotatedKey)));
+		Result afterwards = run(MockServerHttpRequest.get("/api/users/me").header(HttpHeaders.AUTHORIZATION, "Bearer " + token));
+		assertNotNull(afterwards.forwarded);
+	}
+
+	@Test
+	void verifiedTokensAreServedFromTheCache() {
+		String token = bearerFor(currentKey);
+		run(MockServerHttpRequest.get("/api/users/me").header(HttpHeaders.AUTHORIZATION, "Bearer " + token));
+		int fetches = jwksFetches.get();
+
+		Result result = run(MockServerHttpRequest.get("/api/users/me").header(HttpHeaders.AUTHORIZATION, "Bearer " + token));
+
+		assertNotNull(result.forwarded);
+		assertEquals(fetches, jwksFetches.get());
+	}
+
+	private Result run(MockServerHttpRequest.BaseBuilder<?> request) {
+		MockServerWebExchange exchange = MockServerWebExchange.from(request);
+		AtomicReference<ServerWebExchange> forwarded = new AtomicReference<>();
+		GatewayFilterChain chain = next -> {
+			forwarded.set(next);
+			return Mono.empty();
+		};
+		filter.filter(exchange, chain).block(Duration.ofSeconds(5));
+		return new Result(exchange, forwarded.get());
+	}
+
+	private static String bearerFor(KeyPair key) {
+		return token("current", key).compact();
+	}
+
+	private static JwtBuilder token(String kid, KeyPair key) {
+		return Jwts.builder()
+				.setHeaderParam("kid", kid)
+				.setSubject("user@example.com")
+				.claim("roles", List.of("CLIENT"))
+				.claim("id", 42)
+				.claim("ver", 3)
+				.setIssuedAt(new Date())
+				.setExpiration(Date.from(Instant.now().plusSeconds(600)))
+				.signWith(key.getPrivate(), SignatureAlgorithm.ES256);
+	}
+
+	private static JWK jwk(String kid, KeyPair key) {
+		return new ECKey.Builder(Curve.P_256, (ECPublicKey) key.getPublic()).keyID(kid).build();
+	}
+
+	private static String jwks(JWK... keys) {
+		return new JWKSet(new ArrayList<>(List.of(keys))).toString();
+	}
+
+	private record Result(MockServerWebExchange exchange, ServerWebExchange forwarded) {
+	}
+}
@@ -0,0 +1,129 @@
+package com.example.users.benchmark;
+
+import com.example.users.Config.ThymeleafConfig;
+import com.example.users.Services.UserServices.EmailTemplateService;
+import com.example.users.Services.UserServices.PrecompiledTemplate;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.thymeleaf.TemplateEngine;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Year;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Password reset email body: the string concatenation it used to be built with, a full
+ * Thymeleaf render of the (cached) classpath template, and the precompiled template rendered
+ * to a String and straight to UTF-8 bytes. The UTF-8 variants are what actually gets written
+ * to a response or a MIME part, so the concatenation baseline also encodes its result.
+ * Run with {@code -prof gc} to compare allocation per email.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmailRenderingBenchmark {
+
+    private static final String FIRST_NAME = "Youssef";
+    private static final String RESET_LINK = "http://localhost:4200/client/reset-password?token=3f2a9c1e-5b7d-4e8a-9f60-1c2d3e4f5a6b";
+    private static final String EXPIRY_TIME = "2025-05-01 14:30:00";
+
+    private AnnotationConfigApplicationContext context;
+    private EmailTemplateService templateService;
+    private PrecompiledTemplate precompiled;
+    private String year;
+
+    @Setup
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(ThymeleafConfig.class);
+        templateService = new EmailTemplateService(context.getBean(TemplateEngine.class), true);
+        precompiled = templateService.precompile("password-reset", "firstName", "resetLink", "expiryTime", "year");
+        year = String.valueOf(Year.now().getValue());
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] concatenation() {
+        return legacyConcatenation(FIRST_NAME, RESET_LINK, EXPIRY_TIME).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] thymeleafProcess() {
+        return templateService.processTemplate("password-reset", Map.of(
+                "firstName", FIRST_NAME,
+                "resetLink", RESET_LINK,
+                "expiryTime", EXPIRY_TIME,
+                "year", year)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String precompiledString() {
+        return precompiled.render(FIRST_NAME, RESET_LINK, EXPIRY_TIME, year);
+    }
+
+    @Benchmark
+    public byte[] precompiledUtf8() {
+        return precompiled.renderUtf8(FIRST_NAME, RESET_LINK, EXPIRY_TIME, year);
+    }
+
+    // Verbatim copy of PasswordResetService.buildResetEmail before the template
+    private static String legacyConcatenation(String firstName, String resetLink, String expiryTime) {
+        return "<!DOCTYPE html>" +
+                "<html>" +
+                "<head>" +
+                "    <meta http-equiv=\"Content-Type\" content=\"text/html; charset=UTF-8\" />" +
+                "    <meta name=\"viewport\" content=\"width=device-width, initial-scale=1.0\"/>" +
+                "    <style>" +
+                "        body { font-family: Arial, sans-serif; line-height: 1.6; color: #333; background-color: #f5f5f5; margin: 0; padding: 0; }" +
+                "        .container { max-width: 600px; margin: 20px auto; background-color: #f9f9f9; border-radius: 6px; overflow: hidden; box-shadow: 0 3px 10px rgba(0,0,0,0.1); }" +
+                "        .header { text-align: center; padding: 25px 0; background: linear-gradient(135deg, #0062E6 0%, #33AEFF 100%); color: white; }" +
+                "        .header h2 { margin: 0; font-weight: 500; letter-spacing: 0.5px; }" +
+                "        .content { background-color: white; padding: 40px; border-radius: 0 0 5px 5px; }" +
+                "        .content h3 { color: #2c3e50; margin-top: 0; }" +
+                "        .button-container { text-align: center; margin: 30px 0; }" +
+                "        .button { display: inline-block; background: linear-gradient(135deg, #0062E6 0%, #33AEFF 100%); color: white !important; text-decoration: none; " +
+                "                  padding: 12px 30px; border-radius: 50px; font-weight: 500; letter-spacing: 0.5px; transition: all 0.3s; box-shadow: 0 4px 6px rgba(50, 50, 93, .11), 0 1px 3px rgba(0, 0, 0, .08); }" +
+                "        .reset-link { margin-top: 20px; padding: 15px; background-color: #f8f9fa; border-radius: 4px; word-break: break-all; color: #007bff; }" +
+                "        .expiry-notice { margin-top: 20px; padding: 10px 15px; background-color: #fff4e5; border-left: 4px solid #ffa726; font-style: italic; color: #666; }" +
+                "        .footer { text-align: center; margin-top: 0; padding: 20px; color: #666; font-size: 12px; background-color: #f9f9f9; }" +
+                "        .divider { height: 1px; background-color: #e9ecef; margin: 30px 0; }" +
+                "    </style>" +
+                "</head>" +
+                "<body>" +
+                "    <div class='container'>" +
+                "        <div class='header'>" +
+                "            <h2>Password Reset Request</h2>" +
+                "        </div>" +
+                "        <div class='content'>" +
+                "            <h3>Hello " + firstName + ",</h3>" +
+                "            <p>We received a request to reset your password for your account. If you didn't make this request, you can safely ignore this email.</p>" +
+                "            <div class='button-container'>" +
+                "                <a href='" + resetLink + "' class='button' style='color: white;'>Reset Your Password</a>" +
+                "            </div>" +
+                "            <p>If the button above doesn't work, copy and paste the following link into your browser:</p>" +
+                "            <div class='reset-link'>" +
+                "                <a href='" + resetLink + "'>" + resetLink + "</a>" +
+                "            </div>" +
+                "            <div class='expiry-notice'>" +
+                "                <p><strong>Note:</strong> This link will expire on " + expiryTime + ".</p>" +
+                "            </div>" +
+                "            <div class='divider'></div>" +
+                "            <p>If you didn't request a password reset, please ensure your account is secure by checking your account details.</p>" +
+                "            <p>Best regards,<br/><strong>Your Application Team</strong></p>" +
+                "        </div>" +
+                "        <div class='footer'>" +
+                "            <p>&copy; " + java.time.Year.now().getValue() + " Your Company. All rights reserved.</p>" +
+                "            <p>This is an automated message, please do not reply to this email.</p>" +
+                "        </div>" +
+                "    </div>" +
+                "</body>" +
+                "</html>";
+    }
+}
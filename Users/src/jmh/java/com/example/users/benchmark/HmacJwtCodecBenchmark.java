@@ -0,0 +1,70 @@
+package com.example.users.benchmark;
+
+import com.example.users.Enum.Role;
+import com.example.users.security.HmacJwtCodec;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.Key;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * HmacJwtCodec against the JJWT 0.11.5 parser for the same legacy HS256 token.
+ * Run with {@code -prof gc} to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HmacJwtCodecBenchmark {
+
+    private static final Set<Role> ROLES = Set.of(Role.CLIENT);
+
+    private Key key;
+    private JwtParser jjwtParser;
+    private HmacJwtCodec codec;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        byte[] keyBytes = Base64.getEncoder().encode("secretcodeisherebrowhatdouthinknow".getBytes());
+        key = Keys.hmacShaKeyFor(keyBytes);
+        jjwtParser = Jwts.parserBuilder().setSigningKey(key).build();
+        codec = new HmacJwtCodec(keyBytes);
+        token = legacyToken();
+    }
+
+    // Legacy tokens are no longer issued, so only decoding is measured
+    private String legacyToken() {
+        List<String> roleNames = ROLES.stream().map(Enum::name).collect(Collectors.toList());
+        Date now = new Date();
+        return Jwts.builder()
+                .setSubject("bench@example.com")
+                .claim("roles", roleNames)
+                .claim("id", 42L)
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + 1000 * 60 * 60 * 24))
+                .signWith(key, SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    @Benchmark
+    public Object jjwtDecode() {
+        return jjwtParser.parseClaimsJws(token).getBody();
+    }
+
+    @Benchmark
+    public Object codecDecode() {
+        return codec.decode(token);
+    }
+}
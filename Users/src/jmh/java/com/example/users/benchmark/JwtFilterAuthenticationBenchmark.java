@@ -0,0 +1,151 @@
+package com.example.users.benchmark;
+
+import com.example.users.Enum.AuthenticationMode;
+import com.example.users.Enum.Role;
+import com.example.users.Repository.UserRepository;
+import com.example.users.Services.UserServices.CustomUserDetailsService;
+import com.example.users.security.GatewayIdentityVerifier;
+import com.example.users.security.JWTFilter;
+import com.example.users.security.JwtKeySet;
+import com.example.users.security.JwtSigningProperties;
+import com.example.users.security.JwtUtils;
+import com.example.users.security.TokenRevocation;
+import com.example.users.security.VerifiedTokenCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Requests/sec through JWTFilter for each {@link AuthenticationMode}.
+ * The user lookup is replaced by a stub that simulates a MySQL round trip and counts calls,
+ * so the {@code dbQueries} counter divided by the op count gives DB queries per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtFilterAuthenticationBenchmark {
+
+    private static final String IDENTITY_SECRET = "benchmark-identity-secret";
+
+    @Param({"DATABASE", "CLAIMS", "GATEWAY"})
+    public AuthenticationMode mode;
+
+    // Simulated latency of findByEmail + user_roles
+    @Param({"0", "250"})
+    public long dbLatencyMicros;
+
+    private JWTFilter filter;
+    private CountingUserDetailsService userDetailsService;
+    private String authorizationHeader;
+    private String identityHeader;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class QueryCounter {
+        public long dbQueries;
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        JwtSigningProperties signing = new JwtSigningProperties();
+        // No key material in benchmarks: sign with a key generated at startup
+        signing.setAllowEphemeralKey(true);
+        JwtUtils jwtUtils = new JwtUtils(new JwtKeySet(signing), "");
+        userDetailsService = new CountingUserDetailsService(dbLatencyMicros);
+
+        filter = new JWTFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtil", jwtUtils);
+        ReflectionTestUtils.setField(filter, "customUserDetailsService", userDetailsService);
+        ReflectionTestUtils.setField(filter, "verifiedTokenCache",
+                new VerifiedTokenCache(10_000, Duration.ofMinutes(15), new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(filter, "gatewayIdentityVerifier",
+                new GatewayIdentityVerifier("X-Authenticated-User", IDENTITY_SECRET));
+        ReflectionTestUtils.setField(filter, "tokenRevocation",
+                new TokenRevocation(tokenVersionRepository(), new SimpleMeterRegistry(), 100_000, 16, Duration.ofMinutes(1)));
+        ReflectionTestUtils.setField(filter, "authenticationMode", mode);
+
+        authorizationHeader = "Bearer " + jwtUtils.generateToken("bench@example.com", Set.of(Role.CLIENT), 42L, 0);
+        identityHeader = signIdentity("42|0|" + (System.currentTimeMillis() / 1000 + 3600) + "|CLIENT|0|bench@example.com");
+    }
+
+    @Benchmark
+    public Object authenticate(QueryCounter counter) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/profile/me");
+        request.setServletPath("/api/profile/me");
+        request.addHeader("Authorization", authorizationHeader);
+        if (mode == AuthenticationMode.GATEWAY) {
+            request.addHeader("X-Authenticated-User", identityHeader);
+        }
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+            counter.dbQueries += userDetailsService.drainCalls();
+        }
+    }
+
+    // Only findTokenVersionById is called, once per refresh interval: every user is at version 0
+    private static UserRepository tokenVersionRepository() {
+        return (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class},
+                (proxy, method, args) -> method.getName().equals("findTokenVersionById") ? Optional.of(0) : null);
+    }
+
+    // Same format as the Gateway's IdentityHeaderSigner
+    private static String signIdentity(String payload) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(IDENTITY_SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payloadBytes) + "." + encoder.encodeToString(mac.doFinal(payloadBytes));
+    }
+
+    static class CountingUserDetailsService extends CustomUserDetailsService {
+
+        private final LongAdder calls = new LongAdder();
+        private final long latencyNanos;
+        private final UserDetails user = new User("bench@example.com", "{noop}password",
+                List.of(new SimpleGrantedAuthority(Role.CLIENT.name())));
+
+        CountingUserDetailsService(long latencyMicros) {
+            this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+        }
+
+        @Override
+        public UserDetails loadUserByUsername(String username) {
+            calls.increment();
+            if (latencyNanos > 0) {
+                LockSupport.parkNanos(latencyNanos);
+            }
+            return user;
+        }
+
+        long drainCalls() {
+            return calls.sumThenReset();
+        }
+    }
+}
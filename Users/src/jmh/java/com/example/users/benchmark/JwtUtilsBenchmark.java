@@ -0,0 +1,71 @@
+package com.example.users.benchmark;
+
+import com.example.users.Enum.Role;
+import com.example.users.security.JwtKeySet;
+import com.example.users.security.JwtSigningProperties;
+import com.example.users.security.JwtUtils;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issuing and verification as done on login and by JWTFilter on a cache miss.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtUtilsBenchmark {
+
+    private static final Set<Role> ROLES = Set.of(Role.CLIENT);
+    private static final String LEGACY_SECRET = "secretcodeisherebrowhatdouthinknow";
+
+    private JwtUtils jwtUtils;
+    private String es256Token;
+    private String legacyHmacToken;
+
+    @Setup
+    public void setUp() {
+        JwtSigningProperties signing = new JwtSigningProperties();
+        // No key material in benchmarks: sign with a key generated at startup
+        signing.setAllowEphemeralKey(true);
+        jwtUtils = new JwtUtils(new JwtKeySet(signing), LEGACY_SECRET);
+        es256Token = jwtUtils.generateToken("bench@example.com", ROLES, 42L, 0);
+        // Issued before ES256 signing: HS256 with jwt.secret and no kid
+        Date now = new Date();
+        legacyHmacToken = Jwts.builder()
+                .setSubject("bench@example.com")
+                .claim("roles", List.of("CLIENT"))
+                .claim("id", 42L)
+                .claim("ver", 0)
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + Duration.ofHours(1).toMillis()))
+                .signWith(Keys.hmacShaKeyFor(Base64.getEncoder().encode(LEGACY_SECRET.getBytes())), SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtils.generateToken("bench@example.com", ROLES, 42L, 0);
+    }
+
+    @Benchmark
+    public Object parseEs256Token() {
+        return jwtUtils.parseToken(es256Token);
+    }
+
+    @Benchmark
+    public Object parseLegacyHmacToken() {
+        return jwtUtils.parseToken(legacyHmacToken);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.users.benchmark;
+
+import com.example.users.Services.UserServices.MfaService;
+import com.example.users.Services.UserServices.QrCodeRenderer;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import dev.samstevens.totp.code.HashingAlgorithm;
+import dev.samstevens.totp.qr.QrData;
+import dev.samstevens.totp.qr.ZxingPngQrGenerator;
+import dev.samstevens.totp.secret.DefaultSecretGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QR code for MFA setup: the old base64 data URI embedded in the /api/mfa/setup JSON
+ * against the PNG and SVG streamed by /api/mfa/qr.
+ * Run with {@code -prof gc} to compare allocation per operation; {@code streamPng} and
+ * {@code streamSvg} return the payload size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QrCodeBenchmark {
+
+    private QrData qrData;
+    private String otpAuthUri;
+    private QrCodeRenderer renderer;
+
+    @State(Scope.Thread)
+    public static class Sink {
+        // Stands in for the servlet output stream, reused between invocations
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        String secret = new DefaultSecretGenerator(32).generate();
+        qrData = new QrData.Builder()
+                .label("bench@example.com")
+                .secret(secret)
+                .issuer("Assurance App")
+                .algorithm(HashingAlgorithm.SHA1)
+                .digits(6)
+                .period(30)
+                .build();
+        otpAuthUri = new MfaService(null, null, null, null).buildOtpAuthUri(secret, "bench@example.com");
+        renderer = new QrCodeRenderer(200, ErrorCorrectionLevel.L, 1);
+    }
+
+    // What MfaService.generateQrCodeImageUri used to do on every setup call
+    @Benchmark
+    public String legacyDataUri() throws Exception {
+        byte[] imageData = new ZxingPngQrGenerator().generate(qrData);
+        return "data:image/png;base64," + Base64.getEncoder().encodeToString(imageData);
+    }
+
+    @Benchmark
+    public int streamPng(Sink sink) throws Exception {
+        sink.out.reset();
+        renderer.writePng(otpAuthUri, sink.out);
+        return sink.out.size();
+    }
+
+    @Benchmark
+    public int streamSvg(Sink sink) throws Exception {
+        sink.out.reset();
+        renderer.writeSvg(otpAuthUri, sink.out);
+        return sink.out.size();
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.users.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Map-to-JSON serialization of the AuthController login / refresh responses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseSerializationBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // A realistic ES256 token length
+    private final String token = "x".repeat(260);
+
+    @Benchmark
+    public byte[] loginResponse() throws Exception {
+        Map<String, Object> response = new HashMap<>();
+        response.put("token", token);
+        response.put("requiresMfa", false);
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] mfaRequiredResponse() throws Exception {
+        Map<String, Object> response = new HashMap<>();
+        response.put("requiresMfa", true);
+        response.put("email", "bench@example.com");
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] refreshResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(Map.of("token", token));
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.users.security;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWTFilter.isPublicPath, evaluated on every request before any token work.
+ * Lives in the security package because the method is package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtFilterPublicPathBenchmark {
+
+    // First public path, last public path, and a protected path that scans the whole list
+    @Param({"/api/auth/login", "/.well-known/jwks.json", "/api/profile/me"})
+    public String path;
+
+    @Benchmark
+    public boolean isPublicPath() {
+        return JWTFilter.isPublicPath(path);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.users.Config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * User, MfaInfo and PasswordResetToken take their ids in pooled blocks of 50 from the
+ * {@code id_generators} table (so Hibernate can batch their inserts) instead of AUTO_INCREMENT.
+ * Tables that already hold rows from the AUTO_INCREMENT days need their generator row to start
+ * above the highest existing id, which this does once the schema is in place and before the web
+ * server takes requests. Harmless on every later start: values are only ever raised.
+ * <p>
+ * The pooled optimizer hands out the block just below the stored value, so that value has to be at
+ * least {@code max(id) + allocationSize}.
+ */
+@Slf4j
+@Component
+public class IdGeneratorInitializer {
+
+    // allocationSize of the entities' @TableGenerator
+    private static final int ALLOCATION_SIZE = 50;
+
+    // Each generator is keyed (pkColumnValue) by its entity's table name
+    private static final List<String> TABLES = List.of("users", "mfa_info", "password_reset_tokens");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // The EntityManagerFactory dependency makes sure Hibernate has created or updated the schema first
+    public IdGeneratorInitializer(DataSource dataSource, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @PostConstruct
+    void alignWithExistingIds() {
+        for (String table : TABLES) {
+            String floor = "(select coalesce(max(id), 0) + " + ALLOCATION_SIZE + " from " + table + ")";
+            try {
+                jdbcTemplate.update("insert into id_generators (sequence_name, next_val) select ?, " + floor
+                        + " from (select 1) one where not exists (select 1 from id_generators where sequence_name = ?)", table, table);
+            } catch (DuplicateKeyException e) {
+                // Another instance inserted it first; the update below still applies
+            }
+            int raised = jdbcTemplate.update("update id_generators set next_val = " + floor
+                    + " where sequence_name = ? and next_val < " + floor, table);
+            if (raised > 0) {
+                log.info("Raised the {} id generator above the existing ids", table);
+            }
+        }
+    }
+}
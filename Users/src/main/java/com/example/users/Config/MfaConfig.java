@@ -1,6 +1,7 @@
 package com.example.users.Config;
 
-import dev.samstevens.totp.code.*;
+import com.example.users.security.ReplayProtectedCodeVerifier;
+import dev.samstevens.totp.code.CodeVerifier;
 import dev.samstevens.totp.secret.DefaultSecretGenerator;
 import dev.samstevens.totp.secret.SecretGenerator;
 import dev.samstevens.totp.time.SystemTimeProvider;
@@ -19,10 +20,7 @@ public class MfaConfig {
     @Bean
     public CodeVerifier codeVerifier() {
         TimeProvider timeProvider = new SystemTimeProvider();
-        CodeGenerator codeGenerator = new DefaultCodeGenerator();
-        DefaultCodeVerifier codeVerifier = new DefaultCodeVerifier(codeGenerator, timeProvider);
-        // Allow codes from 30 seconds ago and 30 seconds in the future
-        codeVerifier.setAllowedTimePeriodDiscrepancy(1);
-        return codeVerifier;
+        // Allow codes from 30 seconds ago and 30 seconds in the future, never an already used or older step
+        return new ReplayProtectedCodeVerifier(timeProvider, 30, 1);
     }
-}
\ No newline at end of file
+}
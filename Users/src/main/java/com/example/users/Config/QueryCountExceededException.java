@@ -0,0 +1,10 @@
+package com.example.users.Config;
+
+// Thrown in FAIL mode by the statement that takes a request over query-guard.max-statements
+public class QueryCountExceededException extends RuntimeException {
+
+    public QueryCountExceededException(int count, int maxStatements, String sql) {
+        super("SQL statement #" + count + " exceeds the limit of " + maxStatements
+                + " per request (likely an N+1): " + sql);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.users.Config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+// One QueryCountGuard scope per request; runs first so the security filters' queries count too
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    private final QueryCountGuard queryCountGuard;
+    private final List<String> excludedPaths;
+
+    public QueryCountFilter(QueryCountGuard queryCountGuard,
+                            @Value("${query-guard.excluded-paths:}") List<String> excludedPaths) {
+        this.queryCountGuard = queryCountGuard;
+        this.excludedPaths = excludedPaths;
+    }
+
+    // Endpoints that issue many statements by design (bulk work) are left out
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !queryCountGuard.isEnabled() || excludedPaths.contains(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        queryCountGuard.open();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            queryCountGuard.close(request.getMethod() + " " + request.getRequestURI());
+        }
+    }
+}
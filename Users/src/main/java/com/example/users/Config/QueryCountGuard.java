@@ -0,0 +1,88 @@
+package com.example.users.Config;
+
+import com.example.users.Enum.QueryGuardMode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Counts the SQL statements Hibernate prepares while a scope is open on the current thread
+ * ({@link QueryCountFilter} opens one per HTTP request, tests can open their own). A request
+ * over {@code query-guard.max-statements} is logged and counted in LOG mode and fails with
+ * {@link QueryCountExceededException} in FAIL mode, so an N+1 shows up the first time it runs.
+ * <p>
+ * Registered as Hibernate's statement inspector, so only statements issued through JPA are seen,
+ * not plain JDBC such as the user export.
+ */
+@Slf4j
+@Component
+public class QueryCountGuard implements StatementInspector, HibernatePropertiesCustomizer {
+
+    private final QueryGuardMode mode;
+    private final int maxStatements;
+    private final ThreadLocal<int[]> counts = new ThreadLocal<>();
+    private final DistributionSummary statementsPerRequest;
+    private final Counter exceeded;
+
+    public QueryCountGuard(MeterRegistry meterRegistry,
+                           @Value("${query-guard.mode:OFF}") QueryGuardMode mode,
+                           @Value("${query-guard.max-statements:20}") int maxStatements) {
+        this.mode = mode;
+        this.maxStatements = maxStatements;
+        this.statementsPerRequest = DistributionSummary.builder("http.server.requests.sql.statements")
+                .description("SQL statements issued through Hibernate per HTTP request")
+                .register(meterRegistry);
+        this.exceeded = Counter.builder("http.server.requests.sql.limit.exceeded")
+                .description("HTTP requests that ran more SQL statements than query-guard.max-statements")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] count = counts.get();
+        if (count != null && ++count[0] > maxStatements && mode == QueryGuardMode.FAIL) {
+            throw new QueryCountExceededException(count[0], maxStatements, sql);
+        }
+        return sql;
+    }
+
+    public boolean isEnabled() {
+        return mode != QueryGuardMode.OFF;
+    }
+
+    // Start counting on this thread; scopes do not nest
+    public void open() {
+        counts.set(new int[1]);
+    }
+
+    /**
+     * Stop counting and return the number of statements since {@link #open}, recording it and
+     * warning when it is over the limit. {@code description} names the scope in the warning.
+     */
+    public int close(String description) {
+        int[] count = counts.get();
+        counts.remove();
+        if (count == null) {
+            return 0;
+        }
+        statementsPerRequest.record(count[0]);
+        if (count[0] > maxStatements) {
+            exceeded.increment();
+            log.warn("{} ran {} SQL statements (limit {}), check for N+1 queries", description, count[0], maxStatements);
+        }
+        return count[0];
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.users.Config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cache.jcache.MissingCacheStrategy;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Turns on Hibernate's second-level and query caches over JCache (Caffeine) and hands Hibernate a
+ * cache manager with one cache per configured region, sized and expired as
+ * {@link SecondLevelCacheProperties} says. Hit ratios per region are published by
+ * {@link SecondLevelCacheMetrics}.
+ * <p>
+ * Each EntityManagerFactory gets its own manager, which Hibernate closes with it, so two
+ * application contexts in one JVM (tests) never share cached rows. Customizers run after
+ * {@code spring.jpa.properties}, so this overrides the {@code use_second_level_cache=false} set
+ * there; slice tests that do not import this class keep that and run without the cache.
+ */
+@Component
+public class SecondLevelCacheConfig implements HibernatePropertiesCustomizer {
+
+    private final SecondLevelCacheProperties properties;
+
+    public SecondLevelCacheConfig(SecondLevelCacheProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("hibernate-l2-" + UUID.randomUUID()), getClass().getClassLoader());
+        properties.getRegions().forEach((region, sizing) -> {
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            // Hibernate caches its own disassembled, immutable entries: no need to copy them
+            configuration.setStoreByValue(false);
+            configuration.setMaximumSize(OptionalLong.of(sizing.getMaximumSize()));
+            if (sizing.getTtl() != null) {
+                configuration.setExpireAfterWrite(OptionalLong.of(sizing.getTtl().toNanos()));
+            }
+            cacheManager.createCache(region, configuration);
+        });
+        hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+        hibernateProperties.put(AvailableSettings.USE_QUERY_CACHE, true);
+        hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, ConfigSettings.SIMPLE_FACTORY_NAME);
+        hibernateProperties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+        hibernateProperties.put(ConfigSettings.MISSING_CACHE_STRATEGY, MissingCacheStrategy.FAIL.getExternalRepresentation());
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.users.Config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import java.util.function.ToLongFunction;
+
+/**
+ * Per-region second-level cache meters, read from Hibernate's statistics (so they need
+ * {@code hibernate.generate_statistics=true}) and served by actuator under /actuator/metrics:
+ * {@code hibernate.cache.requests} tagged result=hit|miss, {@code hibernate.cache.puts} and
+ * {@code hibernate.cache.hit.ratio} (hits / lookups since startup, NaN before the first lookup).
+ * <p>
+ * Registered for every configured region up front; query regions only exist in Hibernate once
+ * their first query ran, and read as zero until then.
+ */
+@Component
+public class SecondLevelCacheMetrics {
+
+    private final Statistics statistics;
+
+    public SecondLevelCacheMetrics(EntityManagerFactory entityManagerFactory, MeterRegistry meterRegistry,
+                                   SecondLevelCacheProperties properties) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        if (!statistics.isStatisticsEnabled()) {
+            return;
+        }
+        for (String region : properties.getRegions().keySet()) {
+            counter("hibernate.cache.requests", region, CacheRegionStatistics::getHitCount)
+                    .tag("result", "hit").register(meterRegistry);
+            counter("hibernate.cache.requests", region, CacheRegionStatistics::getMissCount)
+                    .tag("result", "miss").register(meterRegistry);
+            counter("hibernate.cache.puts", region, CacheRegionStatistics::getPutCount)
+                    .register(meterRegistry);
+            Gauge.builder("hibernate.cache.hit.ratio", this, metrics -> metrics.hitRatio(region))
+                    .description("Second-level cache hits per lookup")
+                    .tag("region", region)
+                    .register(meterRegistry);
+        }
+    }
+
+    private FunctionCounter.Builder<SecondLevelCacheMetrics> counter(String name, String region,
+                                                                     ToLongFunction<CacheRegionStatistics> count) {
+        return FunctionCounter.builder(name, this, metrics -> metrics.read(region, count)).tag("region", region);
+    }
+
+    private double hitRatio(String region) {
+        long hits = read(region, CacheRegionStatistics::getHitCount);
+        long lookups = hits + read(region, CacheRegionStatistics::getMissCount);
+        return lookups == 0 ? Double.NaN : (double) hits / lookups;
+    }
+
+    // Looked up on every read: Statistics.clear() replaces the per-region objects
+    private long read(String region, ToLongFunction<CacheRegionStatistics> count) {
+        CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+        return regionStatistics == null ? 0 : count.applyAsLong(regionStatistics);
+    }
+}
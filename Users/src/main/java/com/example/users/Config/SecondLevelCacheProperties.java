@@ -0,0 +1,30 @@
+package com.example.users.Config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Hibernate second-level cache regions, bound from {@code hibernate-cache.regions.*}.
+ * Every region named by an entity, collection, natural id or cacheable query must be listed here:
+ * Hibernate refuses to start on a region without explicit sizing.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hibernate-cache")
+public class SecondLevelCacheProperties {
+
+    // region name -> sizing
+    private Map<String, RegionProperties> regions = new LinkedHashMap<>();
+
+    @Data
+    public static class RegionProperties {
+        private long maximumSize = 10_000;
+        // Time to live after each write; unset keeps entries until the size bound evicts them
+        private Duration ttl;
+    }
+}
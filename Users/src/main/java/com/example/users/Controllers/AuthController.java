@@ -2,20 +2,32 @@ package com.example.users.Controllers;
 
 import com.example.users.Entity.User;
 import com.example.users.Enum.Role;
+import com.example.users.Repository.UserCredentials;
 import com.example.users.Repository.UserRepository;
 import com.example.users.Services.UserServices.MfaService;
+import com.example.users.Services.UserServices.UserResponse;
+import com.example.users.Services.UserServices.UserService;
+import com.example.users.Services.UserServices.UserUniquenessFilter;
+import com.example.users.security.AuthenticatedUser;
 import com.example.users.security.JwtUtils;
-import io.jsonwebtoken.Claims;
+import com.example.users.security.LoginThrottle;
+import com.example.users.security.MfaChallenge;
+import com.example.users.security.MfaChallengeStore;
+import com.example.users.security.PasswordHashingService;
+import com.example.users.security.TokenRevocation;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @RestController
 @CrossOrigin
@@ -26,34 +38,45 @@ public class AuthController {
     private final PasswordEncoder passwordEncoder;
     private final JwtUtils jwtService;
     private final MfaService mfaService;
+    private final UserService userService;
+    private final PasswordHashingService passwordHashingService;
+    private final LoginThrottle loginThrottle;
+    private final UserUniquenessFilter userUniquenessFilter;
+    private final MfaChallengeStore mfaChallengeStore;
+    private final TokenRevocation tokenRevocation;
 
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody Map<String, String> user) {
+    public ResponseEntity<?> login(@RequestBody Map<String, String> user, HttpServletRequest request) {
         String email = user.get("email");
         String password = user.get("password");
 
         try {
-            // Fetch user from the database
-            User dbUser = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
+            // Reject brute-force attempts before any DB or BCrypt work; the remote address is the
+            // client's, resolved from the Gateway's X-Forwarded-For (server.forward-headers-strategy)
+            loginThrottle.checkAllowed(request.getRemoteAddr(), email);
 
-            // Validate the password
-            if (!passwordEncoder.matches(password, dbUser.getPassword())) {
-                throw new RuntimeException("Invalid password");
+            // Fetch id, password hash, roles and MFA state in one query
+            UserCredentials dbUser = userRepository.findCredentialsByEmail(email)
+                    .orElseThrow(() -> new BadCredentialsException("User not found"));
+
+            // Validate the password (on the bounded hashing pool)
+            if (!passwordHashingService.matches(password, dbUser.password())) {
+                throw new BadCredentialsException("Invalid password");
             }
+            userService.upgradePasswordHashIfNeeded(dbUser, password);
 
             // Check if MFA is enabled for this user
-            boolean mfaEnabled = mfaService.isMfaEnabled(dbUser);
+            boolean mfaEnabled = dbUser.mfaEnabled();
 
             Map<String, Object> response = new HashMap<>();
 
             // If MFA is not enabled, generate and return JWT
             if (!mfaEnabled) {
                 // Extract roles
-                Set<Role> roles = dbUser.getRoles();
+                Set<Role> roles = dbUser.roles();
 
                 // Generate token
-                String token = jwtService.generateToken(email, roles, dbUser.getId());
+                String token = jwtService.generateToken(email, roles, dbUser.id(), dbUser.tokenVersion());
 
                 // Return token in the response
                 response.put("token", token);
@@ -63,10 +86,15 @@ public class AuthController {
 
             // If MFA is enabled, return flag indicating MFA is required
             response.put("requiresMfa", true);
-            response.put("email", email);  // Send back email for 2nd phase
+            response.put("email", email);  // For display only, the 2nd phase goes by challengeId
+            // The second phase is checked against this in-memory challenge, without a DB lookup
+            response.put("challengeId", mfaChallengeStore.create(dbUser.id(), email, dbUser.roles(),
+                    dbUser.tokenVersion(), dbUser.mfaSecret()));
             return ResponseEntity.ok(response);
 
-        } catch (Exception e) {
+        } catch (BadCredentialsException e) {
+            // Only a wrong email or password counts towards the throttle, not server-side errors
+            loginThrottle.recordFailure(request.getRemoteAddr(), email);
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("message", e.getMessage()));
         }
@@ -75,52 +103,63 @@ public class AuthController {
     @PostMapping("/verify-mfa")
     public ResponseEntity<?> verifyMfa(@RequestBody Map<String, String> mfaRequest) {
         try {
-            String email = mfaRequest.get("email");
+            String challengeId = mfaRequest.get("challengeId");
             String code = mfaRequest.get("code");
 
-            // Find user
-            User dbUser = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found with email: " + email));
-
-            // Get MFA secret
-            String secret = mfaService.getSecretIfExists(dbUser);
-            if (secret == null) {
+            // The second phase is only reachable through a challenge from a successful password
+            // step, which carries the attempt limit; an email alone is not enough
+            if (challengeId == null) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                        .body(Map.of("message", "MFA not set up for this user"));
+                        .body(Map.of("message", "challengeId is required, please log in again"));
             }
+            return verifyMfaChallenge(challengeId, code);
 
-            // Verify code
-            if (!mfaService.verifyCode(code, secret)) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("message", "Invalid MFA code"));
-            }
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "An error occurred: " + e.getMessage()));
+        }
+    }
 
-            // Extract roles
-            Set<Role> roles = dbUser.getRoles();
+    // Second login phase from the challenge store: a pure in-memory TOTP check
+    private ResponseEntity<?> verifyMfaChallenge(String challengeId, String code) {
+        MfaChallenge challenge = mfaChallengeStore.get(challengeId);
+        if (challenge == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", "MFA challenge expired or invalid, please log in again"));
+        }
 
-            // Generate token
-            String token = jwtService.generateToken(email, roles, dbUser.getId());
+        // Verify code
+        if (!mfaService.verifyCode(code, challenge.secret())) {
+            mfaChallengeStore.recordFailure(challengeId);
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", "Invalid MFA code"));
+        }
 
-            // Return token in the response
-            Map<String, Object> response = new HashMap<>();
-            response.put("token", token);
-            response.put("requiresMfa", false);
+        // A challenge can only be used once
+        if (!mfaChallengeStore.consume(challengeId)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", "MFA challenge expired or invalid, please log in again"));
+        }
 
-            return ResponseEntity.ok(response);
+        // Generate token
+        String token = jwtService.generateToken(challenge.email(), challenge.roles(), challenge.userId(),
+                challenge.tokenVersion());
 
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("message", "An error occurred: " + e.getMessage()));
-        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("token", token);
+        response.put("requiresMfa", false);
+
+        return ResponseEntity.ok(response);
     }
 
     @PostMapping("/register")
     public ResponseEntity<?> register(@Valid @RequestBody User user) {
-        // Check if email is already in use
-        if (userRepository.findByEmail(user.getEmail()).isPresent()) {
+        // Check if email or identity number is already in use
+        String duplicate = findDuplicate(user);
+        if (duplicate != null) {
             return ResponseEntity
                     .badRequest()
-                    .body(Map.of("message", "Email is already in use"));
+                    .body(Map.of("message", duplicate));
         }
 
         // Encode the password
@@ -129,19 +168,28 @@ public class AuthController {
         // Set default role (USER)
         user.setRoles(Set.of(Role.CLIENT));
 
-        // Save the user
-        User savedUser = userRepository.save(user);
+        // Save the user, the unique constraints catch a concurrent duplicate
+        User savedUser;
+        try {
+            savedUser = userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity
+                    .badRequest()
+                    .body(Map.of("message", "Email or identity number is already in use"));
+        }
+        userUniquenessFilter.add(savedUser);
 
-        return ResponseEntity.status(HttpStatus.CREATED).body(savedUser);
+        return ResponseEntity.status(HttpStatus.CREATED).body(UserResponse.created(savedUser));
     }
 
     @PostMapping("/register-admin")
     public ResponseEntity<?> registerAdmin(@Valid @RequestBody User user) {
-        // Check if email is already in use
-        if (userRepository.findByEmail(user.getEmail()).isPresent()) {
+        // Check if email or identity number is already in use
+        String duplicate = findDuplicate(user);
+        if (duplicate != null) {
             return ResponseEntity
                     .badRequest()
-                    .body(Map.of("message", "Email is already in use"));
+                    .body(Map.of("message", duplicate));
         }
 
         // Encode the password
@@ -150,36 +198,32 @@ public class AuthController {
         // Set admin role
         user.setRoles(Set.of(Role.ADMIN));
 
-        // Save the user
-        User savedUser = userRepository.save(user);
+        // Save the user, the unique constraints catch a concurrent duplicate
+        User savedUser;
+        try {
+            savedUser = userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity
+                    .badRequest()
+                    .body(Map.of("message", "Email or identity number is already in use"));
+        }
+        userUniquenessFilter.add(savedUser);
 
-        return ResponseEntity.status(HttpStatus.CREATED).body(savedUser);
+        return ResponseEntity.status(HttpStatus.CREATED).body(UserResponse.created(savedUser));
     }
     // Add this method to your AuthController class
     @PostMapping("/refresh-token")
-    public ResponseEntity<?> refreshToken(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> refreshToken(@AuthenticationPrincipal AuthenticatedUser principal) {
         try {
-            // Extract token from header
-            if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            // The JWT filter only sets a principal for a valid bearer token
+            if (principal == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body(Map.of("message", "Invalid or missing Authorization header"));
             }
 
-            String token = authHeader.substring(7).trim();
-
-            // Extract claims from the existing token
-            Claims claims = jwtService.extractClaims(token);
-            String email = claims.getSubject();
-            List<String> roleStrings = (List<String>) claims.get("roles");
-            Long userId = Long.parseLong(claims.get("id").toString());
-
-            // Convert role strings back to Role enum
-            Set<Role> roles = roleStrings.stream()
-                    .map(Role::valueOf)
-                    .collect(Collectors.toSet());
-
             // Generate a new token
-            String newToken = jwtService.generateToken(email, roles, userId);
+            String newToken = jwtService.generateToken(principal.email(), principal.roles(), principal.userId(),
+                    principal.tokenVersion());
 
             return ResponseEntity.ok(Map.of("token", newToken));
         } catch (Exception e) {
@@ -193,17 +237,17 @@ public class AuthController {
         try {
             String token = request.get("token");
 
-            // Extract claims to validate token
-            Claims claims = jwtService.extractClaims(token);
-            String email = claims.getSubject();
-            Long userId = Long.parseLong(claims.get("id").toString());
-            Date expiration = claims.getExpiration();
+            // Parse the token to validate it
+            AuthenticatedUser parsed = jwtService.parseToken(token);
+            if (!tokenRevocation.isCurrent(parsed)) {
+                throw new IllegalStateException("Token has been revoked");
+            }
 
             Map<String, Object> response = new HashMap<>();
             response.put("valid", true);
-            response.put("email", email);
-            response.put("userId", userId);
-            response.put("expiration", expiration);
+            response.put("email", parsed.email());
+            response.put("userId", parsed.userId());
+            response.put("expiration", Date.from(parsed.expiresAt()));
             response.put("currentTime", new Date());
 
             return ResponseEntity.ok(response);
@@ -216,32 +260,52 @@ public class AuthController {
         }
     }
     @PostMapping("/generate-fresh-token")
-    public ResponseEntity<?> generateFreshToken(@RequestBody Map<String, String> loginRequest) {
+    public ResponseEntity<?> generateFreshToken(@RequestBody Map<String, String> loginRequest, HttpServletRequest request) {
+        String email = loginRequest.get("email");
+        String password = loginRequest.get("password");
+
         try {
-            String email = loginRequest.get("email");
-            String password = loginRequest.get("password");
+            // Reject brute-force attempts before any DB or BCrypt work; the remote address is the
+            // client's, resolved from the Gateway's X-Forwarded-For (server.forward-headers-strategy)
+            loginThrottle.checkAllowed(request.getRemoteAddr(), email);
 
-            // Fetch user from the database
-            User dbUser = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
+            // Fetch id, password hash and roles in one query
+            UserCredentials dbUser = userRepository.findCredentialsByEmail(email)
+                    .orElseThrow(() -> new BadCredentialsException("User not found"));
 
-            // Validate the password
-            if (!passwordEncoder.matches(password, dbUser.getPassword())) {
-                throw new RuntimeException("Invalid password");
+            // Validate the password (on the bounded hashing pool)
+            if (!passwordHashingService.matches(password, dbUser.password())) {
+                throw new BadCredentialsException("Invalid password");
             }
+            userService.upgradePasswordHashIfNeeded(dbUser, password);
 
             // Extract roles
-            Set<Role> roles = dbUser.getRoles();
+            Set<Role> roles = dbUser.roles();
 
             // Generate a new token with a very long expiration for testing
-            String token = jwtService.generateLongLifeToken(email, roles, dbUser.getId());
+            String token = jwtService.generateLongLifeToken(email, roles, dbUser.id(), dbUser.tokenVersion());
 
             return ResponseEntity.ok(Map.of("token", token));
-        } catch (Exception e) {
+        } catch (BadCredentialsException e) {
+            // Only a wrong email or password counts towards the throttle, not server-side errors
+            loginThrottle.recordFailure(request.getRemoteAddr(), email);
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("message", e.getMessage()));
         }
     }
+    // The Bloom filter answers for definitely-new values, only possible duplicates hit the database
+    private String findDuplicate(User user) {
+        if (userUniquenessFilter.mightContainEmail(user.getEmail())
+                && userRepository.existsByEmail(user.getEmail())) {
+            return "Email is already in use";
+        }
+        if (userUniquenessFilter.mightContainIdentityNumber(user.getNumberOfIdentity())
+                && userRepository.existsByNumberOfIdentity(user.getNumberOfIdentity())) {
+            return "Identity number is already in use";
+        }
+        return null;
+    }
+
     @GetMapping("/system-time")
     public ResponseEntity<?> getSystemTime() {
         Date currentTime = new Date();
@@ -0,0 +1,27 @@
+package com.example.users.Controllers;
+
+import com.example.users.security.JwtKeySet;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequiredArgsConstructor
+public class JwksController {
+
+    private final JwtKeySet jwtKeySet;
+
+    /**
+     * Public signing keys, so the Gateway and other services can verify tokens locally
+     */
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<String> getJwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(jwtKeySet.getJwksMaxAge()).cachePublic())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(jwtKeySet.getJwksJson());
+    }
+}
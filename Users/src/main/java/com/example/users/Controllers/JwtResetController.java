@@ -1,18 +1,21 @@
 package com.example.users.Controllers;
 
-import com.example.users.Entity.User;
 import com.example.users.Enum.Role;
+import com.example.users.Repository.UserCredentials;
 import com.example.users.Repository.UserRepository;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
+import com.example.users.Services.UserServices.UserService;
+import com.example.users.security.AuthenticatedUser;
+import com.example.users.security.JwtUtils;
+import com.example.users.security.LoginThrottle;
+import com.example.users.security.PasswordHashingService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.web.bind.annotation.*;
 
-import java.security.Key;
+import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -23,10 +26,10 @@ import java.util.stream.Collectors;
 public class JwtResetController {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
-
-    @Value("${jwt.secret}")
-    private String secretString;
+    private final PasswordHashingService passwordHashingService;
+    private final UserService userService;
+    private final JwtUtils jwtUtils;
+    private final LoginThrottle loginThrottle;
 
     @GetMapping("/system-time")
     public ResponseEntity<?> getSystemTime() {
@@ -40,19 +43,24 @@ public class JwtResetController {
     }
 
     @PostMapping("/generate-token")
-    public ResponseEntity<?> generateToken(@RequestBody Map<String, String> credentials) {
+    public ResponseEntity<?> generateToken(@RequestBody Map<String, String> credentials, HttpServletRequest request) {
+        String email = credentials.get("email");
+        String password = credentials.get("password");
+
         try {
-            String email = credentials.get("email");
-            String password = credentials.get("password");
+            // Reject brute-force attempts before any DB or BCrypt work; the remote address is the
+            // client's, resolved from the Gateway's X-Forwarded-For (server.forward-headers-strategy)
+            loginThrottle.checkAllowed(request.getRemoteAddr(), email);
 
             // Find user
-            User user = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found with email: " + email));
+            UserCredentials user = userRepository.findCredentialsByEmail(email)
+                    .orElseThrow(() -> new BadCredentialsException("User not found with email: " + email));
 
             // Verify password
-            if (!passwordEncoder.matches(password, user.getPassword())) {
-                throw new RuntimeException("Invalid password");
+            if (!passwordHashingService.matches(password, user.password())) {
+                throw new BadCredentialsException("Invalid password");
             }
+            userService.upgradePasswordHashIfNeeded(user, password);
 
             // Generate fresh token with current time
             String token = generateFreshJwt(user);
@@ -61,14 +69,16 @@ public class JwtResetController {
             response.put("token", token);
             response.put("generatedAt", new Date());
             response.put("user", Map.of(
-                    "id", user.getId(),
-                    "email", user.getEmail(),
-                    "roles", user.getRoles().stream().map(Enum::name).collect(Collectors.toList())
+                    "id", user.id(),
+                    "email", user.email(),
+                    "roles", user.roles().stream().map(Enum::name).collect(Collectors.toList())
             ));
 
             return ResponseEntity.ok(response);
 
-        } catch (Exception e) {
+        } catch (BadCredentialsException e) {
+            // Only a wrong email or password counts towards the throttle, not server-side errors
+            loginThrottle.recordFailure(request.getRemoteAddr(), email);
             return ResponseEntity.badRequest().body(Map.of(
                     "error", true,
                     "message", e.getMessage()
@@ -81,21 +91,17 @@ public class JwtResetController {
         try {
             String token = request.get("token");
 
-            // Parse token without validation
-            Key key = Keys.hmacShaKeyFor(Base64.getEncoder().encode(secretString.getBytes()));
-            var claims = Jwts.parser()
-                    .setSigningKey(key)
-                    .parseClaimsJws(token)
-                    .getBody();
+            // Parse and verify the token
+            AuthenticatedUser parsed = jwtUtils.parseToken(token);
 
             Map<String, Object> response = new HashMap<>();
             response.put("valid", true);
-            response.put("subject", claims.getSubject());
-            response.put("issuedAt", claims.getIssuedAt());
-            response.put("expiration", claims.getExpiration());
+            response.put("subject", parsed.email());
+            response.put("issuedAt", parsed.issuedAt() == null ? null : Date.from(parsed.issuedAt()));
+            response.put("expiration", parsed.expiresAt() == null ? null : Date.from(parsed.expiresAt()));
             response.put("currentTime", new Date());
-            response.put("roles", claims.get("roles"));
-            response.put("id", claims.get("id"));
+            response.put("roles", parsed.roles().stream().map(Role::name).collect(Collectors.toList()));
+            response.put("id", parsed.userId());
 
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -106,23 +112,7 @@ public class JwtResetController {
         }
     }
 
-    private String generateFreshJwt(User user) {
-        Key key = Keys.hmacShaKeyFor(Base64.getEncoder().encode(secretString.getBytes()));
-
-        Date now = new Date();
-        Date expiry = new Date(now.getTime() + 1000 * 60 * 60 * 24); // 24 hours
-
-        List<String> roleNames = user.getRoles().stream()
-                .map(Role::name)
-                .collect(Collectors.toList());
-
-        return Jwts.builder()
-                .setSubject(user.getEmail())
-                .claim("roles", roleNames)
-                .claim("id", user.getId())
-                .setIssuedAt(now)
-                .setExpiration(expiry)
-                .signWith(key, SignatureAlgorithm.HS256)
-                .compact();
+    private String generateFreshJwt(UserCredentials user) {
+        return jwtUtils.generateToken(user.email(), user.roles(), user.id(), user.tokenVersion(), Duration.ofHours(24)); // 24 hours
     }
 }
\ No newline at end of file
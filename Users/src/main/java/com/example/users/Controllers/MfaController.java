@@ -1,16 +1,19 @@
 package com.example.users.Controllers;
 
 
-import com.example.users.Entity.User;
-import com.example.users.Repository.UserRepository;
 import com.example.users.Services.UserServices.MfaService;
-import com.example.users.security.JwtUtils;
+import com.example.users.Services.UserServices.QrCodeRenderer;
+import com.example.users.security.AuthenticatedUser;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -20,33 +23,25 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class MfaController {
 
-    private final UserRepository userRepository;
     private final MfaService mfaService;
-    private final JwtUtils jwtUtils;
+    private final QrCodeRenderer qrCodeRenderer;
 
     @GetMapping("/setup")
-    public ResponseEntity<?> setupMfa(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> setupMfa(@AuthenticationPrincipal AuthenticatedUser principal) {
         try {
-            // Extract token from header
-            String token = authHeader.replace("Bearer ", "");
-            Long userId = jwtUtils.extractUserId(token);
-
-            // Find user
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new UsernameNotFoundException("User not found with id: " + userId));
+            Long userId = principal.userId();
 
             // Generate secret
             String secret = mfaService.generateNewSecret();
 
             // Save MFA info (not enabled yet)
-            mfaService.createOrUpdateMfaInfo(user, secret, false);
-
-            // Generate QR code
-            String qrCodeImage = mfaService.generateQrCodeImageUri(secret, user.getEmail());
+            mfaService.createOrUpdateMfaInfo(userId, secret, false);
 
+            // The QR code itself is served by /api/mfa/qr
             Map<String, Object> response = new HashMap<>();
             response.put("secret", secret);
-            response.put("qrCodeImage", qrCodeImage);
+            response.put("qrCodeUrl", "/api/mfa/qr");
+            response.put("qrCodeSvgUrl", "/api/mfa/qr?format=svg");
 
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -55,22 +50,43 @@ public class MfaController {
         }
     }
 
+    @GetMapping("/qr")
+    public ResponseEntity<?> getQrCode(@AuthenticationPrincipal AuthenticatedUser principal,
+                                       @RequestParam(defaultValue = "png") String format) throws IOException {
+        // Only served during setup: once MFA is enabled the secret is never rendered again
+        String secret = mfaService.getPendingSecret(principal.userId());
+        if (secret == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", "No MFA setup in progress for this user"));
+        }
+
+        String otpAuthUri = mfaService.buildOtpAuthUri(secret, principal.email());
+        boolean svg = "svg".equalsIgnoreCase(format);
+        // A few KB, rendered on the request thread; a StreamingResponseBody would cost an async dispatch
+        ByteArrayOutputStream image = new ByteArrayOutputStream();
+        if (svg) {
+            qrCodeRenderer.writeSvg(otpAuthUri, image);
+        } else {
+            qrCodeRenderer.writePng(otpAuthUri, image);
+        }
+
+        // The image encodes the TOTP secret, it must never be cached
+        return ResponseEntity.ok()
+                .contentType(svg ? MediaType.valueOf("image/svg+xml") : MediaType.IMAGE_PNG)
+                .cacheControl(CacheControl.noStore())
+                .body(image.toByteArray());
+    }
+
     @PostMapping("/enable")
-    public ResponseEntity<?> enableMfa(@RequestHeader("Authorization") String authHeader,
+    public ResponseEntity<?> enableMfa(@AuthenticationPrincipal AuthenticatedUser principal,
                                        @RequestBody Map<String, String> request) {
         try {
-            // Extract token from header
-            String token = authHeader.replace("Bearer ", "");
-            Long userId = jwtUtils.extractUserId(token);
-
-            // Find user
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new UsernameNotFoundException("User not found with id: " + userId));
+            Long userId = principal.userId();
 
             String code = request.get("code");
 
             // Get MFA secret
-            String secret = mfaService.getSecretIfExists(user);
+            String secret = mfaService.getSecretIfExists(userId);
             if (secret == null) {
                 return ResponseEntity.badRequest()
                         .body(Map.of("message", "MFA setup not initiated for this user"));
@@ -83,7 +99,7 @@ public class MfaController {
             }
 
             // Enable MFA
-            mfaService.enableMfa(user);
+            mfaService.enableMfa(userId);
 
             return ResponseEntity.ok(Map.of("message", "MFA enabled successfully"));
         } catch (Exception e) {
@@ -93,18 +109,12 @@ public class MfaController {
     }
 
     @PostMapping("/disable")
-    public ResponseEntity<?> disableMfa(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> disableMfa(@AuthenticationPrincipal AuthenticatedUser principal) {
         try {
-            // Extract token from header
-            String token = authHeader.replace("Bearer ", "");
-            Long userId = jwtUtils.extractUserId(token);
-
-            // Find user
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new UsernameNotFoundException("User not found with id: " + userId));
+            Long userId = principal.userId();
 
             // Disable MFA
-            mfaService.disableMfa(user);
+            mfaService.disableMfa(userId);
 
             return ResponseEntity.ok(Map.of("message", "MFA disabled successfully"));
         } catch (Exception e) {
@@ -114,18 +124,12 @@ public class MfaController {
     }
 
     @GetMapping("/status")
-    public ResponseEntity<?> getMfaStatus(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> getMfaStatus(@AuthenticationPrincipal AuthenticatedUser principal) {
         try {
-            // Extract token from header
-            String token = authHeader.replace("Bearer ", "");
-            Long userId = jwtUtils.extractUserId(token);
-
-            // Find user
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new UsernameNotFoundException("User not found with id: " + userId));
+            Long userId = principal.userId();
 
             // Check if MFA is enabled
-            boolean mfaEnabled = mfaService.isMfaEnabled(user);
+            boolean mfaEnabled = mfaService.isMfaEnabled(userId);
 
             return ResponseEntity.ok(Map.of("enabled", mfaEnabled));
         } catch (Exception e) {
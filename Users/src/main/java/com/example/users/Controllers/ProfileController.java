@@ -2,13 +2,16 @@ package com.example.users.Controllers;
 
 import com.example.users.Entity.User;
 import com.example.users.Repository.UserRepository;
+import com.example.users.Services.UserServices.CustomUserDetailsService;
 import com.example.users.Services.UserServices.MfaService;
-import com.example.users.security.JwtUtils;
+import com.example.users.security.AuthenticatedUser;
+import com.example.users.security.PasswordHashingService;
+import com.example.users.security.TokenRevocation;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
@@ -24,25 +27,24 @@ public class ProfileController {
 
     private final UserRepository userRepository;
     private final MfaService mfaService;
-    private final JwtUtils jwtUtils;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final CustomUserDetailsService customUserDetailsService;
+    private final TokenRevocation tokenRevocation;
 
     /**
      * Get the current user profile information
      */
     @GetMapping("/me")
-    public ResponseEntity<?> getCurrentUserProfile(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> getCurrentUserProfile(@AuthenticationPrincipal AuthenticatedUser principal) {
         try {
-            // Extract token from header
-            String token = authHeader.replace("Bearer ", "");
-            Long userId = jwtUtils.extractUserId(token);
+            Long userId = principal.userId();
 
-            // Find user
-            User user = userRepository.findById(userId)
+            // Find user, with the roles the response needs
+            User user = userRepository.findProfileById(userId)
                     .orElseThrow(() -> new UsernameNotFoundException("User not found with id: " + userId));
 
             // Check if MFA is enabled
-            boolean mfaEnabled = mfaService.isMfaEnabled(user);
+            boolean mfaEnabled = mfaService.isMfaEnabled(userId);
 
             // Build response
             Map<String, Object> response = new HashMap<>();
@@ -74,12 +76,10 @@ public class ProfileController {
      */
     @PutMapping("/me")
     public ResponseEntity<?> updateProfile(
-            @RequestHeader("Authorization") String authHeader,
+            @AuthenticationPrincipal AuthenticatedUser principal,
             @RequestBody Map<String, Object> updates) {
         try {
-            // Extract token from header
-            String token = authHeader.replace("Bearer ", "");
-            Long userId = jwtUtils.extractUserId(token);
+            Long userId = principal.userId();
 
             // Find user
             User user = userRepository.findById(userId)
@@ -129,51 +129,45 @@ public class ProfileController {
      */
     @PutMapping("/change-password")
     public ResponseEntity<?> changePassword(
-            @RequestHeader("Authorization") String authHeader,
+            @AuthenticationPrincipal AuthenticatedUser principal,
             @RequestBody Map<String, String> passwords) {
-        try {
-            String currentPassword = passwords.get("currentPassword");
-            String newPassword = passwords.get("newPassword");
+        String currentPassword = passwords.get("currentPassword");
+        String newPassword = passwords.get("newPassword");
 
-            if (currentPassword == null || newPassword == null) {
-                return ResponseEntity.badRequest()
-                        .body(Map.of("message", "Current password and new password are required"));
-            }
+        if (currentPassword == null || newPassword == null) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("message", "Current password and new password are required"));
+        }
 
-            // Extract token from header
-            String token = authHeader.replace("Bearer ", "");
-            Long userId = jwtUtils.extractUserId(token);
+        Long userId = principal.userId();
 
-            // Find user
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new UsernameNotFoundException("User not found with id: " + userId));
+        // Find user
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with id: " + userId));
 
-            // Verify current password
-            if (!passwordEncoder.matches(currentPassword, user.getPassword())) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of("message", "Current password is incorrect"));
-            }
+        // Verify current password
+        if (!passwordHashingService.matches(currentPassword, user.getPassword())) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", "Current password is incorrect"));
+        }
 
-            // Update password
-            user.setPassword(passwordEncoder.encode(newPassword));
-            userRepository.save(user);
+        // Update password
+        user.setPassword(passwordHashingService.encode(newPassword));
+        userRepository.save(user);
+        customUserDetailsService.evict(user);
+        // Sign out every session, including this one
+        tokenRevocation.revokeTokens(userId);
 
-            return ResponseEntity.ok(Map.of("message", "Password changed successfully"));
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("message", "Error changing password: " + e.getMessage()));
-        }
+        return ResponseEntity.ok(Map.of("message", "Password changed successfully"));
     }
 
     /**
      * Get system information
      */
     @GetMapping("/system-info")
-    public ResponseEntity<?> getSystemInfo(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> getSystemInfo(@AuthenticationPrincipal AuthenticatedUser principal) {
         try {
-            // Extract token from header
-            String token = authHeader.replace("Bearer ", "");
-            Long userId = jwtUtils.extractUserId(token);
+            Long userId = principal.userId();
 
             // Find user
             User user = userRepository.findById(userId)
@@ -204,11 +198,9 @@ public class ProfileController {
      * Get login activity (placeholder implementation since you'd need an actual activity tracking table)
      */
     @GetMapping("/login-activity")
-    public ResponseEntity<?> getLoginActivity(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> getLoginActivity(@AuthenticationPrincipal AuthenticatedUser principal) {
         try {
-            // Extract token from header
-            String token = authHeader.replace("Bearer ", "");
-            Long userId = jwtUtils.extractUserId(token);
+            Long userId = principal.userId();
 
             // You would typically retrieve this from a database table that logs login events
             // This is a placeholder implementation
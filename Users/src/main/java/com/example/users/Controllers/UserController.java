@@ -3,61 +3,158 @@ package com.example.users.Controllers;
 
 
 import com.example.users.Entity.User;
+import com.example.users.Enum.UserField;
+import com.example.users.Services.UserServices.MfaService;
+import com.example.users.Services.UserServices.UserImportService;
+import com.example.users.Services.UserServices.UserListingService;
+import com.example.users.Services.UserServices.UserResponse;
 import com.example.users.Services.UserServices.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import jakarta.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/users")
 public class UserController {
 
     private final UserService userService;
+    private final UserListingService userListingService;
+    private final UserImportService userImportService;
+    private final MfaService mfaService;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, UserListingService userListingService,
+                          UserImportService userImportService, MfaService mfaService) {
         this.userService = userService;
+        this.userListingService = userListingService;
+        this.userImportService = userImportService;
+        this.mfaService = mfaService;
     }
 
+    // One page in id order; the next page starts after the id in X-Next-Cursor (also sent as a Link header)
     @GetMapping
-    public ResponseEntity<List<User>> getAllUsers() {
-        List<User> users = userService.getAllUsers();
-        return new ResponseEntity<>(users, HttpStatus.OK);
+    public ResponseEntity<?> getAllUsers(@RequestParam(required = false) Long after,
+                                         @RequestParam(required = false) Integer size,
+                                         @RequestParam(required = false) String fields) {
+        try {
+            UserListingService.UserPage page = userListingService.page(after, size, UserField.parse(fields));
+            HttpHeaders headers = new HttpHeaders();
+            if (page.nextCursor() != null) {
+                String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                        .replaceQueryParam("after", page.nextCursor())
+                        .toUriString();
+                headers.add("X-Next-Cursor", page.nextCursor().toString());
+                headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+            }
+            return ResponseEntity.ok().headers(headers).body(page.users());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", e.getMessage()));
+        }
     }
+
+    // Every user (after the optional cursor) as one JSON object per line, streamed from a database cursor.
+    // Written on the request thread, so the export slot is taken and given back within this call
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportUsers(@RequestParam(required = false) Long after,
+                            @RequestParam(required = false) String fields,
+                            HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        Set<UserField> selected;
+        try {
+            selected = UserField.parse(fields);
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            userListingService.writeMessage(e.getMessage(), response.getOutputStream());
+            return;
+        }
+        // Nothing has been written when the export is turned away, so the status can still change
+        if (!userListingService.export(after, selected, response.getOutputStream())) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "30");
+            userListingService.writeMessage("Too many exports running, try again later.", response.getOutputStream());
+        }
+    }
+
+    // Bulk import, CSV with a header row; bad rows are reported by line and do not stop the import
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<?> importCsv(InputStream body) {
+        try {
+            return ResponseEntity.ok(userImportService.importCsv(body));
+        } catch (IllegalArgumentException | IOException e) {
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", "Error importing users: " + e.getMessage()));
+        }
+    }
+
+    // Bulk import, one JSON user per line
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<?> importNdjson(InputStream body) {
+        try {
+            return ResponseEntity.ok(userImportService.importNdjson(body));
+        } catch (IOException e) {
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", "Error importing users: " + e.getMessage()));
+        }
+    }
+
     // Add this new endpoint to UserController
     @PutMapping("/{id}/roles")
     public ResponseEntity<?> updateUserRole(@PathVariable Long id, @RequestBody String role) {
         try {
             User updatedUser = userService.updateUserRole(id, role);
-            return new ResponseEntity<>(updatedUser, HttpStatus.OK);
+            return new ResponseEntity<>(toResponse(updatedUser), HttpStatus.OK);
         } catch (Exception e) {
             return ResponseEntity
                     .status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("message", "Error updating user role: " + e.getMessage()));
         }}
     @GetMapping("/{id}")
-    public ResponseEntity<User> getUserById(@PathVariable Long id) {
+    public ResponseEntity<UserResponse> getUserById(@PathVariable Long id) {
         Optional<User> user = userService.getUserById(id);
-        return user.map(ResponseEntity::ok)
+        return user.map(this::toResponse).map(ResponseEntity::ok)
                 .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
     }
 
     @PostMapping
-    public ResponseEntity<User> createUser(@Valid @RequestBody User user) {
-        User createdUser = userService.createUser(user);
-        return new ResponseEntity<>(createdUser, HttpStatus.CREATED);
+    public ResponseEntity<?> createUser(@Valid @RequestBody User user) {
+        try {
+            User createdUser = userService.createUser(user);
+            return new ResponseEntity<>(UserResponse.created(createdUser), HttpStatus.CREATED);
+        } catch (IllegalStateException e) {
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", e.getMessage()));
+        }
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<User> updateUser(@PathVariable Long id, @Valid @RequestBody User updatedUser) {
-        User user = userService.updateUser(id, updatedUser);
-        return new ResponseEntity<>(user, HttpStatus.OK);
+    public ResponseEntity<?> updateUser(@PathVariable Long id, @Valid @RequestBody User updatedUser) {
+        try {
+            User user = userService.updateUser(id, updatedUser);
+            return new ResponseEntity<>(toResponse(user), HttpStatus.OK);
+        } catch (IllegalStateException e) {
+            return ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", e.getMessage()));
+        }
     }
 
     @DeleteMapping("/{id}")
@@ -65,4 +162,8 @@ public class UserController {
         userService.deleteUser(id);
         return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
     }
+
+    private UserResponse toResponse(User user) {
+        return new UserResponse(user, mfaService.isMfaEnabled(user.getId()));
+    }
 }
@@ -6,11 +6,14 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.Date;
 
 @Entity
 @Table(name = "mfa_info")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "mfa-info")
 @Data
 @Builder
 @NoArgsConstructor
@@ -18,7 +21,8 @@ import java.util.Date;
 public class MfaInfo {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "mfa_info_id")
+    @TableGenerator(name = "mfa_info_id", table = "id_generators", pkColumnValue = "mfa_info", allocationSize = 50)
     private Long id;
 
     @JsonIgnore
@@ -3,11 +3,17 @@ package com.example.users.Entity;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
+// Only a SHA-256 of the token is stored here; the token itself is kept just long enough to queue the email,
+// whose outbox body is cleared once it is sent
+@NamedEntityGraph(name = PasswordResetToken.USER_GRAPH, attributeNodes = @NamedAttributeNode("user"))
 @Entity
-@Table(name = "password_reset_tokens")
+@Table(name = "password_reset_tokens", indexes = @Index(name = "idx_password_reset_tokens_expiry", columnList = "expiry_date_time"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -15,16 +21,25 @@ import java.util.UUID;
 @Builder
 public class PasswordResetToken {
 
+    // Redeeming or validating a token needs its user
+    public static final String USER_GRAPH = "PasswordResetToken.user";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "password_reset_tokens_id")
+    @TableGenerator(name = "password_reset_tokens_id", table = "id_generators", pkColumnValue = "password_reset_tokens", allocationSize = 50)
     private Long id;
 
+    @Transient
     private String token;
 
-    @OneToOne(targetEntity = User.class, fetch = FetchType.EAGER)
+    @Column(name = "token_hash", columnDefinition = "BINARY(32)", unique = true)
+    private byte[] tokenHash;
+
+    @OneToOne(targetEntity = User.class, fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
+    @Column(name = "expiry_date_time")
     private LocalDateTime expiryDateTime;
 
     private boolean used;
@@ -32,10 +47,25 @@ public class PasswordResetToken {
     @PrePersist
     protected void onCreate() {
         token = UUID.randomUUID().toString();
+        tokenHash = hash(token);
         expiryDateTime = LocalDateTime.now().plusHours(24); // Token valid for 24 hours
     }
 
     public boolean isExpired() {
         return LocalDateTime.now().isAfter(expiryDateTime);
     }
+
+    // A used token also expires now, so the purge only has to look at the expiry index
+    public void markUsed() {
+        used = true;
+        expiryDateTime = LocalDateTime.now();
+    }
+
+    public static byte[] hash(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
 }
\ No newline at end of file
@@ -3,14 +3,24 @@ package com.example.users.Entity;
 
 import com.example.users.Enum.IdentityType;
 import com.example.users.Enum.Role;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import java.time.LocalDate;
 import java.util.Set;
 
+// Collections are lazy by default; lookups that need the roles ask for them through this graph
+@NamedEntityGraph(name = User.WITH_ROLES_GRAPH, attributeNodes = @NamedAttributeNode("roles"))
+// Second-level cached (regions sized in hibernate-cache.regions.*): the row, its roles and the email -> id mapping
 @Entity
 @Table(name = "users")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
+@NaturalIdCache(region = "user-emails")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -18,8 +28,12 @@ import java.util.Set;
 @Builder
 public class User {
 
+    // Login by identity number, GET /api/profile/me and the single-user admin endpoints under /api/users
+    public static final String WITH_ROLES_GRAPH = "User.withRoles";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "users_id")
+    @TableGenerator(name = "users_id", table = "id_generators", pkColumnValue = "users", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -28,6 +42,8 @@ public class User {
     @Column(nullable = false)
     private String lastName;
 
+    // Users can change their email, hence mutable; looked up through UserRepository.findByEmail
+    @NaturalId(mutable = true)
     @Column(unique = true, nullable = false)
     private String email;
 
@@ -49,7 +65,8 @@ public class User {
     @Column(nullable = false)
     private String password;
 
-    @ElementCollection(targetClass = Role.class, fetch = FetchType.EAGER)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user-roles")
+    @ElementCollection(targetClass = Role.class, fetch = FetchType.LAZY)
     @CollectionTable(name = "user_roles", joinColumns = @JoinColumn(name = "user_id"))
     @Enumerated(EnumType.STRING)
     @Column(name = "role")
@@ -58,15 +75,16 @@ public class User {
     @Column(nullable = false, updatable = false)
     private LocalDate createdAt;
 
-    private LocalDate updatedAt;
+    // Bumped to revoke every JWT issued so far; only changed by UserRepository.incrementTokenVersion,
+    // kept out of the JSON both ways (responses and @RequestBody User)
+    @JsonIgnore
+    @Column(nullable = false, updatable = false, columnDefinition = "int default 0")
+    private int tokenVersion;
 
-    @OneToOne(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
-    private MfaInfo mfaInfo;
+    private LocalDate updatedAt;
 
-    // You can add this method for convenience, but it's optional
-    public boolean isMfaEnabled() {
-        return mfaInfo != null && mfaInfo.isEnabled();
-    }
+    // No inverse mfaInfo side: Hibernate cannot load a mappedBy one-to-one lazily, so MFA state is
+    // only read through MfaInfoRepository by user id
 
     @PrePersist
     protected void onCreate() {
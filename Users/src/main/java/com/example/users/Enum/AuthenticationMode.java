@@ -0,0 +1,11 @@
+package com.example.users.Enum;
+
+// How JWTFilter turns a verified token into an Authentication
+public enum AuthenticationMode {
+    // Load the user and its roles from the database on every request
+    DATABASE,
+    // Trust the roles and id carried by the verified token, no database access
+    CLAIMS,
+    // Trust the identity header signed by the Gateway, fall back to CLAIMS for direct bearer tokens
+    GATEWAY
+}
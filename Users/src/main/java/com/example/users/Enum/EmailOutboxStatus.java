@@ -0,0 +1,7 @@
+package com.example.users.Enum;
+
+public enum EmailOutboxStatus {
+    PENDING,  // waiting for (another) delivery attempt
+    SENT,
+    DEAD      // gave up after the maximum number of attempts, kept (without the body) for inspection until purged
+}
@@ -0,0 +1,11 @@
+package com.example.users.Enum;
+
+// What QueryCountGuard does when an HTTP request runs more SQL statements than allowed
+public enum QueryGuardMode {
+    // Statements are not counted
+    OFF,
+    // Count, record the per-request metric and log a warning for requests over the limit
+    LOG,
+    // As LOG, and the statement that crosses the limit throws QueryCountExceededException (tests)
+    FAIL
+}
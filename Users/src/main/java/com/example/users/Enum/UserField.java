@@ -0,0 +1,65 @@
+package com.example.users.Enum;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+// Fields that GET /api/users can return; the password hash and token version are never exposed
+public enum UserField {
+    ID("id", "u.id"),
+    FIRST_NAME("firstName", "u.first_name"),
+    LAST_NAME("lastName", "u.last_name"),
+    EMAIL("email", "u.email"),
+    BIRTHDAY("birthday", "u.birthday"),
+    IDENTITY_TYPE("identityType", "u.identity_type"),
+    NUMBER_OF_IDENTITY("numberOfIdentity", "u.number_of_identity"),
+    PHONE_NUMBER("phoneNumber", "u.phone_number"),
+    ADDRESS("address", "u.address"),
+    CREATED_AT("createdAt", "u.created_at"),
+    UPDATED_AT("updatedAt", "u.updated_at"),
+    MFA_ENABLED("mfaEnabled", "m.enabled"),  // left join mfa_info m
+    ROLES("roles", "r.role");                // left join user_roles r, one row per role
+
+    private final String jsonName;
+    private final String column;
+
+    UserField(String jsonName, String column) {
+        this.jsonName = jsonName;
+        this.column = column;
+    }
+
+    public String jsonName() {
+        return jsonName;
+    }
+
+    public String column() {
+        return column;
+    }
+
+    /**
+     * Parse a comma separated list of JSON field names ({@code id,email,roles}). Blank means every field;
+     * the id is always included because it is the pagination cursor.
+     */
+    public static Set<UserField> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return EnumSet.allOf(UserField.class);
+        }
+        Set<UserField> selected = EnumSet.of(ID);
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            selected.add(fromJsonName(trimmed));
+        }
+        return selected;
+    }
+
+    private static UserField fromJsonName(String name) {
+        for (UserField field : values()) {
+            if (field.jsonName.equals(name)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unknown field: " + name);
+    }
+}
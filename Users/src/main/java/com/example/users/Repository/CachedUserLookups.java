@@ -0,0 +1,22 @@
+package com.example.users.Repository;
+
+import com.example.users.Entity.User;
+
+import java.util.Optional;
+
+/**
+ * Single-user reads that go through Hibernate's second-level cache (a query never does):
+ * by id through the entity and roles regions, by email through the natural-id region.
+ * Roles come back initialized, as with the entity graphs they replace.
+ */
+public interface CachedUserLookups {
+
+    // GET /api/profile/me
+    Optional<User> findProfileById(Long id);
+
+    // Single-user admin endpoints under /api/users
+    Optional<User> findAdminViewById(Long id);
+
+    // Roles stay lazy
+    Optional<User> findByEmail(String email);
+}
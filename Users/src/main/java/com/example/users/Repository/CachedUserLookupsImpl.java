@@ -0,0 +1,45 @@
+package com.example.users.Repository;
+
+import com.example.users.Entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Map;
+import java.util.Optional;
+
+@Transactional(readOnly = true)
+class CachedUserLookupsImpl implements CachedUserLookups {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<User> findProfileById(Long id) {
+        return findWithRoles(id);
+    }
+
+    @Override
+    public Optional<User> findAdminViewById(Long id) {
+        return findWithRoles(id);
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(User.class).loadOptional(email);
+    }
+
+    // On a miss the graph joins the roles into the one select; on a hit the user comes from the
+    // entity region without them, so they are initialized from the roles region
+    private Optional<User> findWithRoles(Long id) {
+        User user = entityManager.find(User.class, id,
+                Map.of("jakarta.persistence.fetchgraph", entityManager.getEntityGraph(User.WITH_ROLES_GRAPH)));
+        if (user == null) {
+            return Optional.empty();
+        }
+        Hibernate.initialize(user.getRoles());
+        return Optional.of(user);
+    }
+}
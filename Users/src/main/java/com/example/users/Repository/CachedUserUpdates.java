@@ -0,0 +1,14 @@
+package com.example.users.Repository;
+
+/**
+ * Single-user writes that keep the rest of the second-level cache: a bulk {@code @Modifying}
+ * update on User would invalidate the whole users, user-emails and user-roles regions.
+ */
+public interface CachedUserUpdates {
+
+    // Compare-and-set, so a background rehash never overwrites a password changed in the meantime
+    int replacePasswordHash(Long id, String oldHash, String newHash);
+
+    // Revokes every token issued to the user so far (see TokenRevocation)
+    int incrementTokenVersion(Long id);
+}
@@ -0,0 +1,60 @@
+package com.example.users.Repository;
+
+import com.example.users.Entity.User;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.query.NativeQuery;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@Transactional
+class CachedUserUpdatesImpl implements CachedUserUpdates {
+
+    // Matches no entity table, so Hibernate invalidates no region for the native update below
+    private static final String TOKEN_VERSION_SPACE = "users.token_version";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Through the managed entity, which replaces just this user's entry in the users region.
+    // The lock makes the read skip the cache and hold the row until the new hash is written.
+    @Override
+    public int replacePasswordHash(Long id, String oldHash, String newHash) {
+        User user = entityManager.find(User.class, id, LockModeType.PESSIMISTIC_WRITE);
+        if (user == null || !oldHash.equals(user.getPassword())) {
+            return 0;
+        }
+        user.setPassword(newHash);
+        return 1;
+    }
+
+    // tokenVersion is not updatable through the entity (a merged request body must never reset it),
+    // hence SQL and an evict of this one entry; the email -> id mapping is unchanged
+    @Override
+    public int incrementTokenVersion(Long id) {
+        int updated = entityManager.createNativeQuery("update users set token_version = token_version + 1 where id = :id")
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace(TOKEN_VERSION_SPACE)
+                .setParameter("id", id)
+                .executeUpdate();
+        if (updated > 0) {
+            evict(id);
+        }
+        return updated;
+    }
+
+    private void evict(Long id) {
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        cache.evict(User.class, id);
+        // Again after the commit, in case a concurrent read put the old row back in the meantime
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.evict(User.class, id);
+            }
+        });
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.users.Repository;
+
+import com.example.users.Entity.EmailOutbox;
+import com.example.users.Enum.EmailOutboxStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    // Rows locked by another instance's claim are skipped rather than waited for (lock timeout -2 = SKIP LOCKED)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select e from EmailOutbox e where e.status = :status and e.nextAttemptAt <= :now order by e.id")
+    List<EmailOutbox> findDueForUpdate(@Param("status") EmailOutboxStatus status,
+                                       @Param("now") LocalDateTime now,
+                                       Pageable pageable);
+
+    // The body can hold a live reset link, so it is cleared as soon as the row is finished with
+    @Modifying
+    @Query("update EmailOutbox e set e.status = com.example.users.Enum.EmailOutboxStatus.SENT, e.sentAt = :sentAt, "
+            + "e.attempts = e.attempts + 1, e.lastError = null, e.htmlBody = '' where e.id in :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("sentAt") LocalDateTime sentAt);
+
+    @Modifying
+    @Query("update EmailOutbox e set e.status = :status, e.attempts = :attempts, e.nextAttemptAt = :nextAttemptAt, "
+            + "e.lastError = :lastError where e.id = :id")
+    int markFailed(@Param("id") Long id,
+                   @Param("status") EmailOutboxStatus status,
+                   @Param("attempts") int attempts,
+                   @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                   @Param("lastError") String lastError);
+
+    @Modifying
+    @Query("update EmailOutbox e set e.status = com.example.users.Enum.EmailOutboxStatus.DEAD, e.attempts = :attempts, "
+            + "e.nextAttemptAt = :deadAt, e.lastError = :lastError, e.htmlBody = '' where e.id = :id")
+    int markDead(@Param("id") Long id,
+                 @Param("attempts") int attempts,
+                 @Param("deadAt") LocalDateTime deadAt,
+                 @Param("lastError") String lastError);
+
+    // Same bounded batches as the reset token purge. Finished rows keep next_attempt_at from their
+    // last claim or from being given up on, so the (status, next_attempt_at) index serves the delete
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = "org.hibernate.query.native.spaces", value = "email_outbox"))
+    @Query(value = "delete from email_outbox where status in ('SENT', 'DEAD') and next_attempt_at < :cutoff limit :limit",
+            nativeQuery = true)
+    int deleteFinishedBatch(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+}
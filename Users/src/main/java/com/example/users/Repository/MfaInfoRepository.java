@@ -2,13 +2,46 @@ package com.example.users.Repository;
 
 
 import com.example.users.Entity.MfaInfo;
-import com.example.users.Entity.User;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
+// All lookups go by user id (the user_id column), so no User has to be loaded first
 @Repository
 public interface MfaInfoRepository extends JpaRepository<MfaInfo, Long> {
-    Optional<MfaInfo> findByUser(User user);
-}
\ No newline at end of file
+    Optional<MfaInfo> findByUser_Id(Long userId);
+
+    // The two reads behind every MFA status check are query-cached; Hibernate drops their results
+    // whenever mfa_info is written, including by the bulk update and delete below
+    @QueryHints({@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "mfa-info-queries")})
+    @Query("select m.secret from MfaInfo m where m.user.id = :userId")
+    Optional<String> findSecretByUserId(@Param("userId") Long userId);
+
+    // Only a secret that is still being set up, so the QR code cannot be fetched again once MFA is on
+    @QueryHints({@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "mfa-info-queries")})
+    @Query("select m.secret from MfaInfo m where m.user.id = :userId and m.enabled = false")
+    Optional<String> findPendingSecretByUserId(@Param("userId") Long userId);
+
+    @QueryHints({@QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = "mfa-info-queries")})
+    boolean existsByUser_IdAndEnabledTrue(Long userId);
+
+    @Modifying(clearAutomatically = true)
+    @Query("update MfaInfo m set m.enabled = :enabled, m.updatedAt = CURRENT_TIMESTAMP where m.user.id = :userId")
+    int updateEnabledByUserId(@Param("userId") Long userId, @Param("enabled") boolean enabled);
+
+    // User has no cascading mfaInfo side, so deleting a user removes its row explicitly
+    @Transactional
+    @Modifying
+    @Query("delete from MfaInfo m where m.user.id = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+}
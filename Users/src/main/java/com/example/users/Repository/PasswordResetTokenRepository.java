@@ -2,13 +2,38 @@ package com.example.users.Repository;
 
 import com.example.users.Entity.PasswordResetToken;
 import com.example.users.Entity.User;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
 public interface PasswordResetTokenRepository extends JpaRepository<PasswordResetToken, Long> {
-    Optional<PasswordResetToken> findByToken(String token);
+
+    // Unique index lookup on the token's SHA-256; the raw token is not stored here, and the outbox
+    // row that carries the emailed link loses its body once sent (EmailOutboxRepository.markSent)
+    @EntityGraph(PasswordResetToken.USER_GRAPH)
+    Optional<PasswordResetToken> findByTokenHash(byte[] tokenHash);
+
+    default Optional<PasswordResetToken> findByToken(String token) {
+        return token == null ? Optional.empty() : findByTokenHash(PasswordResetToken.hash(token));
+    }
+
     Optional<PasswordResetToken> findByUser(User user);
-}
\ No newline at end of file
+
+    // One bounded batch per transaction, so the purge never holds locks on more than `limit` rows.
+    // The query space tells Hibernate which table changed; otherwise every native update clears the whole L2 cache
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = "org.hibernate.query.native.spaces", value = "password_reset_tokens"))
+    @Query(value = "delete from password_reset_tokens where expiry_date_time < :cutoff limit :limit", nativeQuery = true)
+    int deleteExpiredBatch(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+}
@@ -0,0 +1,49 @@
+package com.example.users.Repository;
+
+import com.example.users.Enum.Role;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * What the authentication paths need from a user: id, password hash, token version, roles and MFA state.
+ * Loaded by {@link UserRepository#findCredentialsByEmail} in a single statement.
+ */
+public record UserCredentials(Long id,
+                              String email,
+                              String numberOfIdentity,
+                              String password,
+                              int tokenVersion,
+                              Set<Role> roles,
+                              boolean mfaEnabled,
+                              String mfaSecret) {
+
+    // One row per role (a single row with a null role when the user has none)
+    public record Row(Long id,
+                      String email,
+                      String numberOfIdentity,
+                      String password,
+                      int tokenVersion,
+                      Role role,
+                      Boolean mfaEnabled,
+                      String mfaSecret) {
+    }
+
+    static Optional<UserCredentials> fold(List<Row> rows) {
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+        Row first = rows.get(0);
+        EnumSet<Role> roles = EnumSet.noneOf(Role.class);
+        for (Row row : rows) {
+            if (row.role() != null) {
+                roles.add(row.role());
+            }
+        }
+        return Optional.of(new UserCredentials(first.id(), first.email(), first.numberOfIdentity(), first.password(),
+                first.tokenVersion(), Collections.unmodifiableSet(roles), Boolean.TRUE.equals(first.mfaEnabled()), first.mfaSecret()));
+    }
+}
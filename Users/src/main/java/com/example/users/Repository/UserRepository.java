@@ -1,18 +1,59 @@
 package com.example.users.Repository;
 
 import com.example.users.Entity.User;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, CachedUserLookups, CachedUserUpdates {
 
-    Optional<User> findByEmail(String email);
+    // findById / findByEmail load the user row only (findByEmail, findProfileById and findAdminViewById
+    // are CachedUserLookups, served from the second-level cache); roles are lazy unless a graph asks for them
+
+    /**
+     * Credentials for the login / MFA / token paths in one statement, without hydrating
+     * the entity or its roles collection.
+     */
+    default Optional<UserCredentials> findCredentialsByEmail(String email) {
+        return UserCredentials.fold(findCredentialRowsByEmail(email));
+    }
+
+    @Query("select new com.example.users.Repository.UserCredentials$Row(u.id, u.email, u.numberOfIdentity, u.password, u.tokenVersion, r, m.enabled, m.secret) "
+            + "from User u left join u.roles r left join MfaInfo m on m.user = u where u.email = :email")
+    List<UserCredentials.Row> findCredentialRowsByEmail(@Param("email") String email);
 
 
     boolean existsByEmail(String email);
 
+    @EntityGraph(User.WITH_ROLES_GRAPH)
     Optional<User> findByNumberOfIdentity(String numberOfIdentity);
-}
\ No newline at end of file
+
+    boolean existsByNumberOfIdentity(String numberOfIdentity);
+
+    // Duplicate checks for a whole import chunk in one query each
+    @Query("select u.email from User u where u.email in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    @Query("select u.numberOfIdentity from User u where u.numberOfIdentity in :numbers")
+    List<String> findExistingIdentityNumbers(@Param("numbers") Collection<String> numbers);
+
+    // Streamed in fetch-size chunks (MySQL needs useCursorFetch=true), must run in a transaction
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("select new com.example.users.Repository.UserUniqueKeys(u.email, u.numberOfIdentity) from User u")
+    Stream<UserUniqueKeys> streamUniqueKeys();
+
+    @Query("select u.tokenVersion from User u where u.id = :id")
+    Optional<Integer> findTokenVersionById(@Param("id") Long id);
+
+    // replacePasswordHash and incrementTokenVersion are CachedUserUpdates, which evict only the one user
+}
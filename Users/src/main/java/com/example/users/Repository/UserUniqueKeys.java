@@ -0,0 +1,5 @@
+package com.example.users.Repository;
+
+// The two unique columns of a user, without loading the entity
+public record UserUniqueKeys(String email, String numberOfIdentity) {
+}
@@ -4,40 +4,99 @@ package com.example.users.Services.UserServices;
 
 
 import com.example.users.Entity.User;
+import com.example.users.Repository.UserCredentials;
 import com.example.users.Repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
     @Autowired
     private UserRepository userRepository; // Ensure this repository exists
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${user-details.cache.ttl:PT5M}")
+    private Duration cacheTtl;
+
+    @Value("${user-details.cache.maximum-size:10000}")
+    private long cacheMaximumSize;
+
+    // Keyed by email and by identity number. Concurrent misses for the same key share one query.
+    private Cache<String, UserDetails> usersByEmail;
+    private Cache<String, UserDetails> usersByIdentityNumber;
+
+    @PostConstruct
+    void initCaches() {
+        usersByEmail = buildCache();
+        usersByIdentityNumber = buildCache();
+        CaffeineCacheMetrics.monitor(meterRegistry, usersByEmail, "user-details.by-email");
+        CaffeineCacheMetrics.monitor(meterRegistry, usersByIdentityNumber, "user-details.by-identity-number");
+    }
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         // This is still the method Spring Security uses
-        // Now we search by the identity number (numberOfIdentity)
-        User user = userRepository.findByEmail(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        // Misses (unknown users) are not cached, the exception propagates to the caller
+        return usersByEmail.get(username, email -> toUserDetails(userRepository.findCredentialsByEmail(email)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"))));
+    }
+
+    // This is your custom method, used internally if you want to load a user by identity number
+    public UserDetails loadUserByIdentityNumber(String identityNumber) throws UsernameNotFoundException {
+        return usersByIdentityNumber.get(identityNumber, number -> toUserDetails(userRepository.findByNumberOfIdentity(number)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"))));
+    }
 
+    /**
+     * Drop the cached entries of a user. Must be called with the user's state as it was
+     * before the change (old email / identity number) whenever credentials or roles change.
+     */
+    public void evict(User user) {
+        evict(user.getEmail(), user.getNumberOfIdentity());
+    }
+
+    public void evict(String email, String numberOfIdentity) {
+        if (email != null) {
+            usersByEmail.invalidate(email);
+        }
+        if (numberOfIdentity != null) {
+            usersByIdentityNumber.invalidate(numberOfIdentity);
+        }
+    }
+
+    private Cache<String, UserDetails> buildCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(cacheMaximumSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .build();
+    }
+
+    private static UserDetails toUserDetails(UserCredentials credentials) {
         return new org.springframework.security.core.userdetails.User(
-                user.getEmail(), // Use email as the username for authentication
-                user.getPassword(),
-                user.getRoles().stream()
+                credentials.email(),
+                credentials.password(),
+                credentials.roles().stream()
                         .map(role -> new org.springframework.security.core.authority.SimpleGrantedAuthority(role.name()))
                         .toList()
         );
     }
 
-    // This is your custom method, used internally if you want to load a user by identity number
-    public UserDetails loadUserByIdentityNumber(String identityNumber) throws UsernameNotFoundException {
-        User user = userRepository.findByNumberOfIdentity(identityNumber)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
-
+    private static UserDetails toUserDetails(User user) {
         return new org.springframework.security.core.userdetails.User(
                 user.getEmail(), // Use email as the username for authentication
                 user.getPassword(),
@@ -46,4 +105,4 @@ public class CustomUserDetailsService implements UserDetailsService {
                         .toList()
         );
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,206 @@
+package com.example.users.Services.UserServices;
+
+import com.example.users.Entity.EmailOutbox;
+import com.example.users.Enum.EmailOutboxStatus;
+import com.example.users.Repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drains the email outbox in the background. Due rows are claimed in batches (locked
+ * with SKIP LOCKED and leased for {@code claim-timeout}, so several instances can run),
+ * then sent over one SMTP connection that stays open for the whole run.
+ * Failed sends are retried with exponential backoff; after {@code max-attempts}, or on
+ * a permanent failure such as an invalid address, the row is dead-lettered. Sent and
+ * dead rows keep no body; {@link EmailOutboxPurger} deletes them later.
+ */
+@Slf4j
+@Component
+public class EmailOutboxDispatcher {
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final EmailService emailService;
+    private final JavaMailSender mailSender;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration claimTimeout;
+
+    private final Counter sent;
+    private final Counter retried;
+    private final Counter deadLettered;
+
+    public EmailOutboxDispatcher(EmailOutboxRepository emailOutboxRepository,
+                                 EmailService emailService,
+                                 JavaMailSender mailSender,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${email.outbox.batch-size:50}") int batchSize,
+                                 @Value("${email.outbox.max-attempts:8}") int maxAttempts,
+                                 @Value("${email.outbox.initial-backoff:PT30S}") Duration initialBackoff,
+                                 @Value("${email.outbox.max-backoff:PT1H}") Duration maxBackoff,
+                                 @Value("${email.outbox.claim-timeout:PT5M}") Duration claimTimeout) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.emailService = emailService;
+        this.mailSender = mailSender;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.claimTimeout = claimTimeout;
+
+        this.sent = Counter.builder("email.outbox.sent")
+                .description("Outbox emails delivered to the SMTP server")
+                .register(meterRegistry);
+        this.retried = Counter.builder("email.outbox.retried")
+                .description("Outbox emails that failed and were scheduled for another attempt")
+                .register(meterRegistry);
+        this.deadLettered = Counter.builder("email.outbox.dead-lettered")
+                .description("Outbox emails given up on")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${email.outbox.poll-interval:PT5S}")
+    public void dispatch() {
+        List<EmailOutbox> batch = claimBatch();
+        if (batch.isEmpty()) {
+            return;
+        }
+        try (SmtpConnection connection = new SmtpConnection()) {
+            while (!batch.isEmpty()) {
+                if (!sendBatch(batch, connection)) {
+                    return;
+                }
+                // A short batch means the outbox is drained for now
+                batch = batch.size() < batchSize ? List.of() : claimBatch();
+            }
+        }
+    }
+
+    // Returns false when the SMTP server could not be reached, the run then stops early
+    private boolean sendBatch(List<EmailOutbox> batch, SmtpConnection connection) {
+        List<Long> sentIds = new ArrayList<>(batch.size());
+        boolean connected = true;
+        for (EmailOutbox email : batch) {
+            if (!connected) {
+                recordFailure(email, "SMTP server unavailable", false);
+                continue;
+            }
+            try {
+                connection.send(emailService.createHtmlMessage(email.getRecipient(), email.getSubject(), email.getHtmlBody()));
+                sentIds.add(email.getId());
+            } catch (SendFailedException e) {
+                Address[] invalid = e.getInvalidAddresses();
+                recordFailure(email, e.getMessage(), invalid != null && invalid.length > 0);
+            } catch (MessagingException | MailException e) {
+                connected = connection.isConnected();
+                recordFailure(email, e.getMessage(), false);
+            }
+        }
+        if (!sentIds.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status ->
+                    emailOutboxRepository.markSent(sentIds, LocalDateTime.now()));
+            sent.increment(sentIds.size());
+        }
+        return connected;
+    }
+
+    // Locks due rows and pushes their next attempt past the lease, so no other run picks them up meanwhile
+    private List<EmailOutbox> claimBatch() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<EmailOutbox> due = emailOutboxRepository.findDueForUpdate(EmailOutboxStatus.PENDING, now,
+                    PageRequest.of(0, batchSize));
+            due.forEach(email -> email.setNextAttemptAt(now.plus(claimTimeout)));
+            return due;
+        });
+    }
+
+    private void recordFailure(EmailOutbox email, String error, boolean permanent) {
+        int attempts = email.getAttempts() + 1;
+        boolean dead = permanent || attempts >= maxAttempts;
+        String lastError = error == null ? null : error.substring(0, Math.min(error.length(), 1000));
+
+        if (dead) {
+            transactionTemplate.executeWithoutResult(status ->
+                    emailOutboxRepository.markDead(email.getId(), attempts, LocalDateTime.now(), lastError));
+            deadLettered.increment();
+            log.warn("Giving up on outbox email {} to {} after {} attempt(s): {}", email.getId(), email.getRecipient(), attempts, error);
+        } else {
+            LocalDateTime nextAttemptAt = LocalDateTime.now().plus(backoff(attempts));
+            transactionTemplate.executeWithoutResult(status -> emailOutboxRepository.markFailed(email.getId(),
+                    EmailOutboxStatus.PENDING, attempts, nextAttemptAt, lastError));
+            retried.increment();
+        }
+    }
+
+    // initial-backoff * 2^(attempts - 1), capped at max-backoff
+    private Duration backoff(int attempts) {
+        Duration delay = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    /**
+     * One SMTP transport for a whole run, opened on first use and reopened if the server
+     * drops it. Falls back to {@link JavaMailSender#send} (one connection per message)
+     * when the sender is not a {@link JavaMailSenderImpl}.
+     */
+    private final class SmtpConnection implements AutoCloseable {
+
+        private Transport transport;
+
+        void send(MimeMessage message) throws MessagingException {
+            if (!(mailSender instanceof JavaMailSenderImpl sender)) {
+                mailSender.send(message);
+                return;
+            }
+            if (transport == null || !transport.isConnected()) {
+                close();
+                transport = sender.getSession().getTransport(sender.getProtocol() == null ? "smtp" : sender.getProtocol());
+                transport.connect(sender.getHost(), sender.getPort(), sender.getUsername(), sender.getPassword());
+            }
+            message.saveChanges();
+            transport.sendMessage(message, message.getAllRecipients());
+        }
+
+        boolean isConnected() {
+            return transport == null || transport.isConnected();
+        }
+
+        @Override
+        public void close() {
+            if (transport != null) {
+                try {
+                    transport.close();
+                } catch (MessagingException e) {
+                    log.debug("Error closing SMTP connection", e);
+                }
+                transport = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.users.Services.UserServices;
+
+import com.example.users.Repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Deletes sent and dead outbox rows once they are older than {@code retention}. Rows go in
+ * batches of {@code batch-size}, each in its own short transaction, until a batch comes back
+ * short or {@code max-batches} is reached; the next run picks up whatever is left.
+ */
+@Slf4j
+@Component
+public class EmailOutboxPurger {
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final Duration retention;
+    private final int batchSize;
+    private final int maxBatches;
+    private final Counter purged;
+
+    public EmailOutboxPurger(EmailOutboxRepository emailOutboxRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${email.outbox.purge.retention:P7D}") Duration retention,
+                             @Value("${email.outbox.purge.batch-size:500}") int batchSize,
+                             @Value("${email.outbox.purge.max-batches:100}") int maxBatches) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.retention = retention;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.purged = Counter.builder("email.outbox.purged")
+                .description("Sent or dead outbox emails deleted by the purge job")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${email.outbox.purge.interval:PT1H}")
+    public int purge() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        int total = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            int deleted = emailOutboxRepository.deleteFinishedBatch(cutoff, batchSize);
+            total += deleted;
+            if (deleted < batchSize) {
+                break;
+            }
+        }
+        if (total > 0) {
+            purged.increment(total);
+            log.debug("Purged {} finished outbox emails", total);
+        }
+        return total;
+    }
+}
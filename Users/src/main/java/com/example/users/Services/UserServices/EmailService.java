@@ -28,6 +28,10 @@ public class EmailService {
     }
 
     public void sendHtmlMessage(String to, String subject, String htmlContent) throws MessagingException {
+        emailSender.send(createHtmlMessage(to, subject, htmlContent));
+    }
+
+    public MimeMessage createHtmlMessage(String to, String subject, String htmlContent) throws MessagingException {
         MimeMessage message = emailSender.createMimeMessage();
         MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
 
@@ -35,7 +39,6 @@ public class EmailService {
         helper.setTo(to);
         helper.setSubject(subject);
         helper.setText(htmlContent, true); // true indicates HTML content
-
-        emailSender.send(message);
+        return message;
     }
 }
\ No newline at end of file
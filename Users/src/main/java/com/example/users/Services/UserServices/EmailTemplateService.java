@@ -1,20 +1,27 @@
 package com.example.users.Services.UserServices;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class EmailTemplateService {
 
     private final TemplateEngine templateEngine;
+    private final boolean cacheable;
+    private final Map<String, PrecompiledTemplate> precompiled = new ConcurrentHashMap<>();
 
     @Autowired
-    public EmailTemplateService(TemplateEngine templateEngine) {
+    public EmailTemplateService(TemplateEngine templateEngine,
+                                @Value("${email.templates.cacheable:true}") boolean cacheable) {
         this.templateEngine = templateEngine;
+        this.cacheable = cacheable;
     }
 
     public String processTemplate(String templateName, Map<String, Object> variables) {
@@ -26,4 +33,20 @@ public class EmailTemplateService {
 
         return templateEngine.process(templateName, context);
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the template split into static chunks and slots for {@code variables}, compiled on
+     * first use. With caching off (development) it is recompiled on every call so edits show up.
+     */
+    public PrecompiledTemplate precompile(String templateName, String... variables) {
+        if (!cacheable) {
+            return PrecompiledTemplate.compile(templateEngine, templateName, variables);
+        }
+        PrecompiledTemplate template = precompiled.computeIfAbsent(templateName,
+                name -> PrecompiledTemplate.compile(templateEngine, name, variables));
+        if (!template.getVariables().equals(List.of(variables))) {
+            throw new IllegalArgumentException("Template " + templateName + " was precompiled for " + template.getVariables());
+        }
+        return template;
+    }
+}
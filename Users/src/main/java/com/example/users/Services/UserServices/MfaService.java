@@ -1,19 +1,15 @@
 package com.example.users.Services.UserServices;
 
 import com.example.users.Entity.MfaInfo;
-import com.example.users.Entity.User;
 import com.example.users.Repository.MfaInfoRepository;
+import com.example.users.Repository.UserRepository;
 import dev.samstevens.totp.code.*;
-import dev.samstevens.totp.exceptions.QrGenerationException;
 import dev.samstevens.totp.qr.QrData;
-import dev.samstevens.totp.qr.QrGenerator;
-import dev.samstevens.totp.qr.ZxingPngQrGenerator;
 import dev.samstevens.totp.secret.SecretGenerator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Base64;
 import java.util.Optional;
 
 @Service
@@ -21,6 +17,7 @@ import java.util.Optional;
 public class MfaService {
 
     private final MfaInfoRepository mfaInfoRepository;
+    private final UserRepository userRepository;
     private final SecretGenerator secretGenerator;
     private final CodeVerifier codeVerifier;
 
@@ -28,34 +25,28 @@ public class MfaService {
         return secretGenerator.generate();
     }
 
-    public String generateQrCodeImageUri(String secret, String email) {
-        QrData data = new QrData.Builder()
+    // otpauth:// URI encoded in the QR code served by /api/mfa/qr
+    public String buildOtpAuthUri(String secret, String email) {
+        return new QrData.Builder()
                 .label(email)
                 .secret(secret)
                 .issuer("Assurance App")
                 .algorithm(HashingAlgorithm.SHA1)
                 .digits(6)
                 .period(30)
-                .build();
-
-        QrGenerator qrGenerator = new ZxingPngQrGenerator();
-        byte[] imageData;
-        try {
-            imageData = qrGenerator.generate(data);
-        } catch (QrGenerationException e) {
-            throw new RuntimeException("Error generating QR code", e);
-        }
-
-        return "data:image/png;base64," + Base64.getEncoder().encodeToString(imageData);
+                .build()
+                .getUri();
     }
 
     public boolean verifyCode(String code, String secret) {
         return codeVerifier.isValidCode(secret, code);
     }
 
+    // Every MFA read or flag change below is a single statement keyed by user id
+
     @Transactional
-    public MfaInfo createOrUpdateMfaInfo(User user, String secret, boolean enabled) {
-        Optional<MfaInfo> existingMfaInfo = mfaInfoRepository.findByUser(user);
+    public MfaInfo createOrUpdateMfaInfo(Long userId, String secret, boolean enabled) {
+        Optional<MfaInfo> existingMfaInfo = mfaInfoRepository.findByUser_Id(userId);
 
         if (existingMfaInfo.isPresent()) {
             MfaInfo mfaInfo = existingMfaInfo.get();
@@ -64,7 +55,7 @@ public class MfaService {
             return mfaInfoRepository.save(mfaInfo);
         } else {
             MfaInfo mfaInfo = MfaInfo.builder()
-                    .user(user)
+                    .user(userRepository.getReferenceById(userId))
                     .secret(secret)
                     .enabled(enabled)
                     .build();
@@ -73,32 +64,25 @@ public class MfaService {
     }
 
     @Transactional
-    public void enableMfa(User user) {
-        Optional<MfaInfo> mfaInfoOpt = mfaInfoRepository.findByUser(user);
-        if (mfaInfoOpt.isPresent()) {
-            MfaInfo mfaInfo = mfaInfoOpt.get();
-            mfaInfo.setEnabled(true);
-            mfaInfoRepository.save(mfaInfo);
-        }
+    public void enableMfa(Long userId) {
+        mfaInfoRepository.updateEnabledByUserId(userId, true);
     }
 
     @Transactional
-    public void disableMfa(User user) {
-        Optional<MfaInfo> mfaInfoOpt = mfaInfoRepository.findByUser(user);
-        if (mfaInfoOpt.isPresent()) {
-            MfaInfo mfaInfo = mfaInfoOpt.get();
-            mfaInfo.setEnabled(false);
-            mfaInfoRepository.save(mfaInfo);
-        }
+    public void disableMfa(Long userId) {
+        mfaInfoRepository.updateEnabledByUserId(userId, false);
+    }
+
+    public boolean isMfaEnabled(Long userId) {
+        return mfaInfoRepository.existsByUser_IdAndEnabledTrue(userId);
     }
 
-    public boolean isMfaEnabled(User user) {
-        Optional<MfaInfo> mfaInfoOpt = mfaInfoRepository.findByUser(user);
-        return mfaInfoOpt.isPresent() && mfaInfoOpt.get().isEnabled();
+    public String getSecretIfExists(Long userId) {
+        return mfaInfoRepository.findSecretByUserId(userId).orElse(null);
     }
 
-    public String getSecretIfExists(User user) {
-        Optional<MfaInfo> mfaInfoOpt = mfaInfoRepository.findByUser(user);
-        return mfaInfoOpt.map(MfaInfo::getSecret).orElse(null);
+    // Null once MFA is enabled
+    public String getPendingSecret(Long userId) {
+        return mfaInfoRepository.findPendingSecretByUserId(userId).orElse(null);
     }
-}
\ No newline at end of file
+}
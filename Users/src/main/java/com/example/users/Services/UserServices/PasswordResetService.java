@@ -0,0 +1,82 @@
+package com.example.users.Services.UserServices;
+
+import com.example.users.Entity.EmailOutbox;
+import com.example.users.Entity.PasswordResetToken;
+import com.example.users.Entity.User;
+import com.example.users.Repository.EmailOutboxRepository;
+import com.example.users.Repository.PasswordResetTokenRepository;
+import com.example.users.Repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Year;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+public class PasswordResetService {
+
+    private static final String RESET_LINK = "http://localhost:4200/client/reset-password?token=";
+    private static final String SUBJECT = "Password Reset Request";
+    private static final String TEMPLATE = "password-reset";
+    private static final DateTimeFormatter EXPIRY_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final UserRepository userRepository;
+    private final PasswordResetTokenRepository tokenRepository;
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final EmailTemplateService emailTemplateService;
+
+    /**
+     * Creates a reset token and queues its email in the same transaction, so there is never
+     * a token without its email or an email without its token. Sending is left to
+     * {@link EmailOutboxDispatcher}; unknown emails are silently ignored.
+     */
+    @Transactional
+    public void requestReset(String email) {
+        Optional<User> userOpt = userRepository.findByEmail(email);
+        if (userOpt.isEmpty()) {
+            return;
+        }
+        User user = userOpt.get();
+
+        // Check if a token already exists for this user and delete it (before the insert, user_id is unique)
+        tokenRepository.findByUser(user).ifPresent(existing -> {
+            tokenRepository.delete(existing);
+            tokenRepository.flush();
+        });
+
+        // Create new token
+        PasswordResetToken token = tokenRepository.save(PasswordResetToken.builder()
+                .user(user)
+                .build());
+
+        // Reset link for frontend
+        String resetLink = RESET_LINK + token.getToken();
+        String expiryTime = token.getExpiryDateTime().format(EXPIRY_FORMAT);
+
+        // The body holds the raw link only until the dispatcher has sent or given up on it
+        emailOutboxRepository.save(EmailOutbox.builder()
+                .recipient(user.getEmail())
+                .subject(SUBJECT)
+                .htmlBody(buildResetEmail(user.getFirstName(), resetLink, expiryTime))
+                .build());
+    }
+
+    /**
+     * Renders {@code templates/email/password-reset.html}. The template is parsed once and kept as
+     * pre-encoded chunks, so each email only escapes and copies its four variables.
+     */
+    public String buildResetEmail(String firstName, String resetLink, String expiryTime) {
+        return resetTemplate().render(firstName, resetLink, expiryTime, String.valueOf(Year.now().getValue()));
+    }
+
+    public byte[] buildResetEmailUtf8(String firstName, String resetLink, String expiryTime) {
+        return resetTemplate().renderUtf8(firstName, resetLink, expiryTime, String.valueOf(Year.now().getValue()));
+    }
+
+    private PrecompiledTemplate resetTemplate() {
+        return emailTemplateService.precompile(TEMPLATE, "firstName", "resetLink", "expiryTime", "year");
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.users.Services.UserServices;
+
+import com.example.users.Repository.PasswordResetTokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Deletes expired and used password reset tokens in the background. Rows go in batches of
+ * {@code batch-size}, each in its own short transaction, until a batch comes back short or
+ * {@code max-batches} is reached; the next run picks up whatever is left.
+ */
+@Slf4j
+@Component
+public class PasswordResetTokenPurger {
+
+    private final PasswordResetTokenRepository tokenRepository;
+    private final int batchSize;
+    private final int maxBatches;
+    private final Counter purged;
+
+    public PasswordResetTokenPurger(PasswordResetTokenRepository tokenRepository,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${password-reset.purge.batch-size:500}") int batchSize,
+                                    @Value("${password-reset.purge.max-batches:100}") int maxBatches) {
+        this.tokenRepository = tokenRepository;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.purged = Counter.builder("password_reset.tokens.purged")
+                .description("Expired or used password reset tokens deleted by the purge job")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${password-reset.purge.interval:PT10M}")
+    public int purge() {
+        LocalDateTime cutoff = LocalDateTime.now();
+        int total = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            int deleted = tokenRepository.deleteExpiredBatch(cutoff, batchSize);
+            total += deleted;
+            if (deleted < batchSize) {
+                break;
+            }
+        }
+        if (total > 0) {
+            purged.increment(total);
+            log.debug("Purged {} expired password reset tokens", total);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.users.Services.UserServices;
+
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A Thymeleaf template rendered once with placeholder values and split into static chunks
+ * and variable slots. Rendering an email then only escapes and copies the variables between
+ * pre-encoded chunks, instead of parsing and walking the template for every message.
+ *
+ * <p>Only templates whose variables are plain {@code th:text} / attribute substitutions can be
+ * precompiled; a variable used in a condition, loop or expression would be evaluated against the
+ * placeholder and is rejected at compile time when its placeholder does not come out verbatim.
+ */
+public final class PrecompiledTemplate {
+
+    private static final char OPEN = '\uE000';
+    private static final char CLOSE = '\uE001';
+    private static final boolean[] ESCAPED = new boolean[0x80];
+    private static final byte[] EMPTY = new byte[0];
+
+    static {
+        for (char c : "&<>\"'".toCharArray()) {
+            ESCAPED[c] = true;
+        }
+    }
+
+    private final List<String> variables;
+    private final String[] chunks;
+    private final byte[][] chunkBytes;
+    private final int[] slots;
+    private final int staticLength;
+
+    private PrecompiledTemplate(List<String> variables, List<String> chunks, List<Integer> slots) {
+        this.variables = variables;
+        this.chunks = chunks.toArray(String[]::new);
+        this.chunkBytes = new byte[this.chunks.length][];
+        int length = 0;
+        for (int i = 0; i < this.chunks.length; i++) {
+            chunkBytes[i] = this.chunks[i].getBytes(StandardCharsets.UTF_8);
+            length += chunkBytes[i].length;
+        }
+        this.slots = slots.stream().mapToInt(Integer::intValue).toArray();
+        this.staticLength = length;
+    }
+
+    public static PrecompiledTemplate compile(TemplateEngine engine, String templateName, String... variables) {
+        Context context = new Context();
+        for (int i = 0; i < variables.length; i++) {
+            context.setVariable(variables[i], String.valueOf(OPEN) + i + CLOSE);
+        }
+        String rendered = engine.process(templateName, context);
+
+        List<String> chunks = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        boolean[] seen = new boolean[variables.length];
+        int from = 0;
+        int open;
+        while ((open = rendered.indexOf(OPEN, from)) >= 0) {
+            int close = rendered.indexOf(CLOSE, open);
+            if (close < 0) {
+                throw new IllegalStateException("Unterminated placeholder in template " + templateName);
+            }
+            int slot = Integer.parseInt(rendered, open + 1, close, 10);
+            chunks.add(rendered.substring(from, open));
+            slots.add(slot);
+            seen[slot] = true;
+            from = close + 1;
+        }
+        chunks.add(rendered.substring(from));
+
+        for (int i = 0; i < variables.length; i++) {
+            if (!seen[i]) {
+                throw new IllegalStateException("Variable '" + variables[i] + "' is not rendered verbatim by template "
+                        + templateName + " and cannot be precompiled");
+            }
+        }
+        return new PrecompiledTemplate(List.of(variables), chunks, slots);
+    }
+
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    /**
+     * Renders with the given values, in the order the variables were declared at compile time.
+     * Values are HTML-escaped the same way Thymeleaf escapes {@code th:text} and attributes.
+     */
+    public String render(String... values) {
+        checkArity(values);
+        int capacity = staticLength;
+        for (int slot : slots) {
+            capacity += values[slot] == null ? 0 : values[slot].length();
+        }
+        StringBuilder out = new StringBuilder(capacity + 16);
+        out.append(chunks[0]);
+        for (int i = 0; i < slots.length; i++) {
+            appendEscaped(out, values[slots[i]]);
+            out.append(chunks[i + 1]);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Renders straight to UTF-8 into an exactly sized array: the static chunks are copied as
+     * pre-encoded bytes and only the variables are encoded and escaped.
+     */
+    public byte[] renderUtf8(String... values) {
+        checkArity(values);
+        byte[][] encoded = new byte[values.length][];
+        int[] escapedLength = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            encoded[i] = values[i] == null ? EMPTY : values[i].getBytes(StandardCharsets.UTF_8);
+            escapedLength[i] = escapedLength(encoded[i]);
+        }
+        int length = staticLength;
+        for (int slot : slots) {
+            length += escapedLength[slot];
+        }
+        byte[] out = new byte[length];
+        int pos = copy(chunkBytes[0], out, 0);
+        for (int i = 0; i < slots.length; i++) {
+            int slot = slots[i];
+            pos = escapedLength[slot] == encoded[slot].length
+                    ? copy(encoded[slot], out, pos)
+                    : writeEscaped(encoded[slot], out, pos);
+            pos = copy(chunkBytes[i + 1], out, pos);
+        }
+        return out;
+    }
+
+    public void writeTo(OutputStream out, String... values) throws IOException {
+        out.write(renderUtf8(values));
+    }
+
+    private void checkArity(String[] values) {
+        if (values.length != variables.size()) {
+            throw new IllegalArgumentException("Expected values for " + variables + " but got " + Arrays.toString(values));
+        }
+    }
+
+    private static int copy(byte[] chunk, byte[] out, int pos) {
+        System.arraycopy(chunk, 0, out, pos, chunk.length);
+        return pos + chunk.length;
+    }
+
+    private static String entity(int c) {
+        return switch (c) {
+            case '&' -> "&amp;";
+            case '<' -> "&lt;";
+            case '>' -> "&gt;";
+            case '"' -> "&quot;";
+            case '\'' -> "&#39;";
+            default -> null;
+        };
+    }
+
+    private static boolean needsEscaping(String value) {
+        // indexOf is an intrinsic; five scans of a short value beat a charAt loop
+        return value.indexOf('&') >= 0 || value.indexOf('<') >= 0 || value.indexOf('>') >= 0
+                || value.indexOf('"') >= 0 || value.indexOf('\'') >= 0;
+    }
+
+    private static void appendEscaped(StringBuilder out, String value) {
+        if (value == null) {
+            return;
+        }
+        if (!needsEscaping(value)) {
+            out.append(value);
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String entity = entity(c);
+            if (entity != null) {
+                out.append(entity);
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+    // The escaped characters are all ASCII and never appear inside a multi-byte UTF-8 sequence,
+    // so escaping can work on the encoded bytes
+    private static int escapedLength(byte[] utf8) {
+        int length = utf8.length;
+        for (byte b : utf8) {
+            if (b >= 0 && ESCAPED[b]) {
+                length += entity(b).length() - 1;
+            }
+        }
+        return length;
+    }
+
+    private static int writeEscaped(byte[] utf8, byte[] out, int pos) {
+        for (byte b : utf8) {
+            if (b >= 0 && ESCAPED[b]) {
+                String entity = entity(b);
+                for (int j = 0; j < entity.length(); j++) {
+                    out[pos++] = (byte) entity.charAt(j);
+                }
+            } else {
+                out[pos++] = b;
+            }
+        }
+        return pos;
+    }
+}
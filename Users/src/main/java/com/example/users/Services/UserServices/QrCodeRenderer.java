@@ -0,0 +1,95 @@
+package com.example.users.Services.UserServices;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Renders QR codes straight into a response stream, as a 1-bit PNG or as an SVG path.
+ * The writer is stateless and shared; size, error correction and quiet zone are configurable.
+ */
+@Component
+public class QrCodeRenderer {
+
+    private final QRCodeWriter writer = new QRCodeWriter();
+    private final Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+    private final int size;
+
+    public QrCodeRenderer(@Value("${mfa.qr.size:200}") int size,
+                          @Value("${mfa.qr.error-correction:L}") ErrorCorrectionLevel errorCorrection,
+                          @Value("${mfa.qr.margin:1}") int margin) {
+        this.size = size;
+        hints.put(EncodeHintType.ERROR_CORRECTION, errorCorrection);
+        hints.put(EncodeHintType.MARGIN, margin);
+        hints.put(EncodeHintType.CHARACTER_SET, StandardCharsets.UTF_8.name());
+        // Otherwise ImageIO buffers every PNG through a temporary file
+        ImageIO.setUseCache(false);
+    }
+
+    public void writePng(String content, OutputStream out) throws IOException {
+        BitMatrix matrix = encode(content, size);
+        BufferedImage image = new BufferedImage(matrix.getWidth(), matrix.getHeight(), BufferedImage.TYPE_BYTE_BINARY);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < matrix.getHeight(); y++) {
+            for (int x = 0; x < matrix.getWidth(); x++) {
+                raster.setSample(x, y, 0, matrix.get(x, y) ? 0 : 1);
+            }
+        }
+        ImageIO.write(image, "png", out);
+    }
+
+    // One module per SVG unit; each dark run of a row is one stroked line with a relative move
+    public void writeSvg(String content, OutputStream out) throws IOException {
+        BitMatrix matrix = encode(content, 0);
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+
+        StringBuilder svg = new StringBuilder(4096);
+        svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 ").append(width).append(' ').append(height)
+                .append("\" width=\"").append(size).append("\" height=\"").append(size)
+                .append("\" shape-rendering=\"crispEdges\"><rect width=\"100%\" height=\"100%\" fill=\"#fff\"/>")
+                .append("<path stroke=\"#000\" transform=\"translate(0 .5)\" d=\"");
+        int cursorX = 0;
+        int cursorY = 0;
+        for (int y = 0; y < height; y++) {
+            int x = 0;
+            while (x < width) {
+                if (!matrix.get(x, y)) {
+                    x++;
+                    continue;
+                }
+                int start = x;
+                while (x < width && matrix.get(x, y)) {
+                    x++;
+                }
+                svg.append('m').append(start - cursorX).append(' ').append(y - cursorY).append('h').append(x - start);
+                cursorX = x;
+                cursorY = y;
+            }
+        }
+        svg.append("\"/></svg>");
+        out.write(svg.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private BitMatrix encode(String content, int pixels) throws IOException {
+        try {
+            return writer.encode(content, BarcodeFormat.QR_CODE, pixels, pixels, hints);
+        } catch (WriterException e) {
+            throw new IOException("Error generating QR code", e);
+        }
+    }
+}
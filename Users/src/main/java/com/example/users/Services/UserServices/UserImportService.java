@@ -0,0 +1,479 @@
+package com.example.users.Services.UserServices;
+
+import com.example.users.Entity.User;
+import com.example.users.Enum.IdentityType;
+import com.example.users.Enum.Role;
+import com.example.users.Repository.UserRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulk user import from CSV (header row with the field names below) or NDJSON (one JSON object per line).
+ * The input is read as a stream and handled in chunks of {@code user-import.batch-size} rows:
+ * <ol>
+ *     <li>rows are validated, and checked for duplicates within the chunk and, in one query per
+ *     column, against the database (only values the uniqueness Bloom filter might have seen);</li>
+ *     <li>passwords are hashed in parallel on a dedicated pool, apart from the login hashing pool;</li>
+ *     <li>the chunk is inserted in one transaction, which Hibernate sends as JDBC batches for
+ *     {@code users} and {@code user_roles} (pooled ids, {@code hibernate.jdbc.batch_size}).</li>
+ * </ol>
+ * A row that fails is reported with its line number and the import goes on. When the chunk insert
+ * itself fails (a concurrent registration took an email) its rows are retried one by one.
+ */
+@Slf4j
+@Service
+public class UserImportService {
+
+    public static final List<String> FIELDS = List.of("firstName", "lastName", "email", "birthday", "identityType",
+            "numberOfIdentity", "phoneNumber", "address", "password", "roles");
+
+    public record RowError(long line, String message) {
+    }
+
+    public record ImportResult(int imported, int failed, List<RowError> errors) {
+    }
+
+    private final UserRepository userRepository;
+    private final UserUniquenessFilter userUniquenessFilter;
+    private final PasswordEncoder passwordEncoder;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor hashingExecutor;
+    private final int batchSize;
+    private final int maxReportedErrors;
+    private final Counter imported;
+    private final Counter failed;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public UserImportService(UserRepository userRepository,
+                             UserUniquenessFilter userUniquenessFilter,
+                             PasswordEncoder passwordEncoder,
+                             ObjectMapper objectMapper,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${user-import.batch-size:500}") int batchSize,
+                             @Value("${user-import.hashing-threads:0}") int hashingThreads,
+                             @Value("${user-import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.userRepository = userRepository;
+        this.userUniquenessFilter = userUniquenessFilter;
+        this.passwordEncoder = passwordEncoder;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+
+        // One thread per core by default; an import hashes one chunk at a time, so the queue stays short
+        int poolSize = hashingThreads > 0 ? hashingThreads : Runtime.getRuntime().availableProcessors();
+        this.hashingExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new ImportThreadFactory());
+        ExecutorServiceMetrics.monitor(meterRegistry, hashingExecutor, "user.import.hashing");
+
+        this.imported = Counter.builder("user.import.rows")
+                .tag("result", "imported")
+                .description("Rows of bulk user imports")
+                .register(meterRegistry);
+        this.failed = Counter.builder("user.import.rows")
+                .tag("result", "failed")
+                .description("Rows of bulk user imports")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the header row is missing or names an unknown column
+     */
+    public ImportResult importCsv(InputStream input) throws IOException {
+        BufferedReader reader = reader(input);
+        String header = reader.readLine();
+        if (header == null || header.isBlank()) {
+            throw new IllegalArgumentException("The CSV import needs a header row.");
+        }
+        List<String> columns = parseCsvLine(stripBom(header)).stream().map(String::trim).toList();
+        for (String column : columns) {
+            if (!FIELDS.contains(column)) {
+                throw new IllegalArgumentException("Unknown column: " + column);
+            }
+        }
+
+        long[] line = {1};
+        return run(() -> {
+            String text;
+            do {
+                text = reader.readLine();
+                line[0]++;
+            } while (text != null && text.isBlank());
+            if (text == null) {
+                return null;
+            }
+            List<String> values = parseCsvLine(text);
+            if (values.size() != columns.size()) {
+                throw new RowException(line[0], "Expected " + columns.size() + " columns, found " + values.size() + ".");
+            }
+            Map<String, String> fields = new HashMap<>();
+            for (int i = 0; i < columns.size(); i++) {
+                fields.put(columns.get(i), values.get(i));
+            }
+            return toCandidate(line[0], fields);
+        });
+    }
+
+    public ImportResult importNdjson(InputStream input) throws IOException {
+        BufferedReader reader = reader(input);
+        long[] line = {0};
+        return run(() -> {
+            String text;
+            do {
+                text = reader.readLine();
+                line[0]++;
+            } while (text != null && text.isBlank());
+            if (text == null) {
+                return null;
+            }
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(line[0] == 1 ? stripBom(text) : text);
+            } catch (JsonProcessingException e) {
+                throw new RowException(line[0], "Invalid JSON: " + e.getOriginalMessage());
+            }
+            if (!node.isObject()) {
+                throw new RowException(line[0], "Expected a JSON object.");
+            }
+            Map<String, String> fields = new HashMap<>();
+            for (String field : FIELDS) {
+                JsonNode value = node.get(field);
+                if (value == null || value.isNull()) {
+                    continue;
+                }
+                if (value.isArray()) {
+                    List<String> items = new ArrayList<>();
+                    value.forEach(item -> items.add(item.asText()));
+                    fields.put(field, String.join(";", items));
+                } else {
+                    fields.put(field, value.asText());
+                }
+            }
+            return toCandidate(line[0], fields);
+        });
+    }
+
+    private ImportResult run(RowSource source) throws IOException {
+        Progress progress = new Progress();
+        List<Candidate> chunk = new ArrayList<>(batchSize);
+        while (true) {
+            Candidate candidate;
+            try {
+                candidate = source.next();
+            } catch (RowException e) {
+                progress.fail(e.line, e.getMessage());
+                continue;
+            }
+            if (candidate == null) {
+                break;
+            }
+            chunk.add(candidate);
+            if (chunk.size() == batchSize) {
+                importChunk(chunk, progress);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, progress);
+        }
+        log.info("User import finished: {} imported, {} failed", progress.imported, progress.failed);
+        return new ImportResult(progress.imported, progress.failed, progress.errors);
+    }
+
+    private void importChunk(List<Candidate> chunk, Progress progress) {
+        List<Candidate> accepted = rejectDuplicates(chunk, progress);
+        if (accepted.isEmpty()) {
+            return;
+        }
+        hashPasswords(accepted);
+
+        try {
+            List<User> users = new ArrayList<>(accepted.size());
+            for (Candidate candidate : accepted) {
+                users.add(candidate.newUser());
+            }
+            transactionTemplate.executeWithoutResult(status -> userRepository.saveAllAndFlush(users));
+            users.forEach(userUniquenessFilter::add);
+            progress.imported(users.size());
+        } catch (DataIntegrityViolationException e) {
+            // Someone else registered one of these values since the check; find the rows it concerns
+            entityManager.clear();
+            for (Candidate candidate : accepted) {
+                importOne(candidate, progress);
+            }
+        } finally {
+            // The request's persistence context (open-in-view) would otherwise keep every imported user
+            entityManager.clear();
+        }
+    }
+
+    private void importOne(Candidate candidate, Progress progress) {
+        try {
+            User user = candidate.newUser();
+            transactionTemplate.executeWithoutResult(status -> userRepository.saveAndFlush(user));
+            userUniquenessFilter.add(user);
+            progress.imported(1);
+        } catch (DataIntegrityViolationException e) {
+            progress.fail(candidate.line(), "Email or identity number already in use.");
+        } finally {
+            entityManager.clear();
+        }
+    }
+
+    // In-chunk duplicates and rows whose email or identity number is already registered
+    private List<Candidate> rejectDuplicates(List<Candidate> chunk, Progress progress) {
+        Set<String> takenEmails = existing(chunk, true);
+        Set<String> takenNumbers = existing(chunk, false);
+        Set<String> chunkEmails = new HashSet<>();
+        Set<String> chunkNumbers = new HashSet<>();
+
+        List<Candidate> accepted = new ArrayList<>(chunk.size());
+        for (Candidate candidate : chunk) {
+            String email = normalize(candidate.user().getEmail());
+            String number = normalize(candidate.user().getNumberOfIdentity());
+            if (takenEmails.contains(email) || !chunkEmails.add(email)) {
+                progress.fail(candidate.line(), "Email already in use.");
+            } else if (takenNumbers.contains(number) || !chunkNumbers.add(number)) {
+                progress.fail(candidate.line(), "Identity number already in use.");
+            } else {
+                accepted.add(candidate);
+            }
+        }
+        return accepted;
+    }
+
+    private Set<String> existing(List<Candidate> chunk, boolean emails) {
+        Set<String> candidates = new HashSet<>();
+        for (Candidate candidate : chunk) {
+            if (emails && userUniquenessFilter.mightContainEmail(candidate.user().getEmail())) {
+                candidates.add(candidate.user().getEmail());
+            } else if (!emails && userUniquenessFilter.mightContainIdentityNumber(candidate.user().getNumberOfIdentity())) {
+                candidates.add(candidate.user().getNumberOfIdentity());
+            }
+        }
+        if (candidates.isEmpty()) {
+            return Set.of();
+        }
+        Collection<String> found = emails
+                ? userRepository.findExistingEmails(candidates)
+                : userRepository.findExistingIdentityNumbers(candidates);
+        Set<String> normalized = new HashSet<>();
+        found.forEach(value -> normalized.add(normalize(value)));
+        return normalized;
+    }
+
+    private void hashPasswords(List<Candidate> candidates) {
+        List<CompletableFuture<Void>> hashes = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            hashes.add(CompletableFuture.runAsync(
+                    () -> candidate.user().setPassword(passwordEncoder.encode(candidate.rawPassword())), hashingExecutor));
+        }
+        CompletableFuture.allOf(hashes.toArray(new CompletableFuture[0])).join();
+    }
+
+    private static Candidate toCandidate(long line, Map<String, String> fields) {
+        try {
+            Set<Role> roles = EnumSet.noneOf(Role.class);
+            String roleList = fields.get("roles");
+            if (roleList != null) {
+                for (String role : roleList.split(";")) {
+                    if (!role.isBlank()) {
+                        roles.add(Role.valueOf(role.trim().toUpperCase(Locale.ROOT)));
+                    }
+                }
+            }
+            if (roles.isEmpty()) {
+                roles.add(Role.CLIENT);
+            }
+            String email = required(fields, "email");
+            if (email.indexOf('@') < 1) {
+                throw new IllegalArgumentException("Invalid email: " + email);
+            }
+            User user = User.builder()
+                    .firstName(required(fields, "firstName"))
+                    .lastName(required(fields, "lastName"))
+                    .email(email)
+                    .birthday(LocalDate.parse(required(fields, "birthday")))
+                    .identityType(IdentityType.valueOf(required(fields, "identityType").toUpperCase(Locale.ROOT)))
+                    .numberOfIdentity(required(fields, "numberOfIdentity"))
+                    .phoneNumber(required(fields, "phoneNumber"))
+                    .address(blankToNull(fields.get("address")))
+                    .roles(roles)
+                    .build();
+            // Taken as is: spaces around a password are part of it
+            String password = fields.get("password");
+            if (password == null || password.isEmpty()) {
+                throw new IllegalArgumentException("Missing password.");
+            }
+            return new Candidate(line, user, password);
+        } catch (DateTimeParseException e) {
+            throw new RowException(line, "Invalid birthday, expected yyyy-MM-dd: " + e.getParsedString());
+        } catch (IllegalArgumentException e) {
+            // Also Enum.valueOf for unknown identity types and roles
+            throw new RowException(line, e.getMessage());
+        }
+    }
+
+    private static String required(Map<String, String> fields, String name) {
+        String value = blankToNull(fields.get(name));
+        if (value == null) {
+            throw new IllegalArgumentException("Missing " + name + ".");
+        }
+        return value;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    private static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    private static BufferedReader reader(InputStream input) {
+        return new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+    }
+
+    private static String stripBom(String text) {
+        return !text.isEmpty() && text.charAt(0) == '\uFEFF' ? text.substring(1) : text;
+    }
+
+    // RFC 4180 fields on a single line: comma separated, optionally quoted, "" inside quotes is a quote
+    static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        hashingExecutor.shutdownNow();
+    }
+
+    @FunctionalInterface
+    private interface RowSource {
+        // Next valid row, null at the end of the input; a RowException reports one bad row
+        Candidate next() throws IOException;
+    }
+
+    private record Candidate(long line, User user, String rawPassword) {
+
+        // A fresh entity for every insert attempt, so a failed transaction leaves nothing behind
+        User newUser() {
+            return User.builder()
+                    .firstName(user.getFirstName())
+                    .lastName(user.getLastName())
+                    .email(user.getEmail())
+                    .birthday(user.getBirthday())
+                    .identityType(user.getIdentityType())
+                    .numberOfIdentity(user.getNumberOfIdentity())
+                    .phoneNumber(user.getPhoneNumber())
+                    .address(user.getAddress())
+                    .password(user.getPassword())
+                    .roles(new HashSet<>(user.getRoles()))
+                    .build();
+        }
+    }
+
+    private static final class RowException extends RuntimeException {
+        private final long line;
+
+        RowException(long line, String message) {
+            super(message);
+            this.line = line;
+        }
+    }
+
+    private final class Progress {
+        private int imported;
+        private int failed;
+        private final List<RowError> errors = new ArrayList<>();
+
+        void imported(int rows) {
+            imported += rows;
+            UserImportService.this.imported.increment(rows);
+        }
+
+        void fail(long line, String message) {
+            failed++;
+            UserImportService.this.failed.increment();
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new RowError(line, message));
+            }
+        }
+    }
+
+    private static final class ImportThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "user-import-hashing-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.users.Services.UserServices;
+
+import com.example.users.Enum.Role;
+import com.example.users.Enum.UserField;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Reads users for {@code GET /api/users} straight from the tables, only the selected columns and
+ * never the entity graph. Users come back in id order with their roles (and MFA flag) joined into
+ * the same statement, then folded into one map per user.
+ * <ul>
+ *     <li>{@link #page}: keyset pagination, {@code id > after order by id limit size}. The cursor is the
+ *     last id, so every page costs the same no matter how deep it is.</li>
+ *     <li>{@link #export}: every user as NDJSON over a forward-only, read-only cursor with a fetch size
+ *     (MySQL needs {@code useCursorFetch=true} for that), so memory does not grow with the table.
+ *     Each export holds a pooled connection for as long as the client reads, so at most
+ *     {@code max-concurrent} run at once; {@link #export} returns false when none is free.</li>
+ * </ul>
+ */
+@Service
+public class UserListingService {
+
+    public record UserPage(List<Map<String, Object>> users, Long nextCursor) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate exportJdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int exportFetchSize;
+    private final Semaphore exportSlots;
+
+    public UserListingService(DataSource dataSource,
+                              ObjectMapper objectMapper,
+                              @Value("${users.page.default-size:50}") int defaultPageSize,
+                              @Value("${users.page.max-size:500}") int maxPageSize,
+                              @Value("${users.export.fetch-size:500}") int exportFetchSize,
+                              @Value("${users.export.max-concurrent:2}") int maxConcurrentExports) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.exportJdbcTemplate = new JdbcTemplate(dataSource);
+        this.exportJdbcTemplate.setFetchSize(exportFetchSize);
+        this.objectMapper = objectMapper;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.exportFetchSize = exportFetchSize;
+        this.exportSlots = new Semaphore(maxConcurrentExports);
+    }
+
+    /**
+     * Users with an id greater than {@code after} (from the start when null), at most {@code size}
+     * of them (the configured default when null, capped at the maximum). {@code nextCursor} is null
+     * on the last page.
+     */
+    public UserPage page(Long after, Integer size, Set<UserField> fields) {
+        fields = columns(fields);
+        int limit = size == null ? defaultPageSize : Math.min(size, maxPageSize);
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1.");
+        }
+        // One extra row tells whether there is a next page without a trailing empty one
+        String sql = select(fields)
+                + " from (select * from users where id > ? order by id limit ?) u"
+                + joins(fields)
+                + " order by u.id";
+        List<Map<String, Object>> users = new ArrayList<>(limit + 1);
+        UserFolder folder = new UserFolder(fields, users::add);
+        jdbcTemplate.query(sql, folder, cursor(after), limit + 1);
+        folder.finish();
+
+        Long nextCursor = null;
+        if (users.size() > limit) {
+            users.remove(limit);
+            nextCursor = (Long) users.get(limit - 1).get(UserField.ID.jsonName());
+        }
+        return new UserPage(users, nextCursor);
+    }
+
+    /**
+     * Write every user with an id greater than {@code after} as one JSON object per line. The output
+     * is flushed after every fetch-size users so the client sees progress while the cursor is read.
+     * Returns false, before writing anything, when {@code max-concurrent} exports are already running.
+     */
+    public boolean export(Long after, Set<UserField> fields, OutputStream out) throws IOException {
+        if (!exportSlots.tryAcquire()) {
+            return false;
+        }
+        try {
+            writeExport(after, fields, out);
+            return true;
+        } finally {
+            exportSlots.release();
+        }
+    }
+
+    private void writeExport(Long after, Set<UserField> fields, OutputStream out) throws IOException {
+        fields = columns(fields);
+        String sql = select(fields)
+                + " from users u"
+                + joins(fields)
+                + " where u.id > ? order by u.id";
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);  // lines are ended by hand below
+        int[] written = {0};
+        UserFolder folder = new UserFolder(fields, user -> {
+            try {
+                generator.writeObject(user);
+                generator.writeRaw('\n');
+                if (++written[0] % exportFetchSize == 0) {
+                    generator.flush();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        try {
+            exportJdbcTemplate.query(
+                    connection -> {
+                        var statement = connection.prepareStatement(sql,
+                                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                        statement.setLong(1, cursor(after));
+                        return statement;
+                    },
+                    folder);
+            folder.finish();
+        } catch (UncheckedIOException e) {
+            // Usually the client went away; stop reading and let the caller see the real cause
+            throw e.getCause();
+        }
+        generator.close();
+    }
+
+    // Error body for the export, as a single NDJSON line
+    public void writeMessage(String message, OutputStream out) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(Map.of("message", message)));
+        out.write('\n');
+    }
+
+    // The folder needs the id, and the columns in enum order
+    private static Set<UserField> columns(Set<UserField> fields) {
+        EnumSet<UserField> columns = EnumSet.of(UserField.ID);
+        columns.addAll(fields);
+        return columns;
+    }
+
+    private static long cursor(Long after) {
+        return after == null ? 0L : after;
+    }
+
+    private static String select(Set<UserField> fields) {
+        StringBuilder sql = new StringBuilder("select ");
+        boolean first = true;
+        for (UserField field : fields) {
+            if (!first) {
+                sql.append(", ");
+            }
+            sql.append(field.column());
+            first = false;
+        }
+        return sql.toString();
+    }
+
+    private static String joins(Set<UserField> fields) {
+        String joins = "";
+        if (fields.contains(UserField.MFA_ENABLED)) {
+            joins += " left join mfa_info m on m.user_id = u.id";
+        }
+        if (fields.contains(UserField.ROLES)) {
+            joins += " left join user_roles r on r.user_id = u.id";
+        }
+        return joins;
+    }
+
+    /**
+     * Folds the rows of one user (one per role) into a single map and hands it on as soon as the
+     * id changes, so only the current user is ever held. Relies on the rows being ordered by id.
+     */
+    private static final class UserFolder implements RowCallbackHandler {
+
+        private final UserField[] fields;
+        private final boolean withRoles;
+        private final Consumer<Map<String, Object>> sink;
+
+        private Long currentId;
+        private Map<String, Object> current;
+        private Set<Role> roles;
+
+        UserFolder(Set<UserField> fields, Consumer<Map<String, Object>> sink) {
+            this.fields = fields.toArray(new UserField[0]);
+            this.withRoles = fields.contains(UserField.ROLES);
+            this.sink = sink;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            // EnumSet order: the id is always the first column and the role, if selected, the last
+            long id = rs.getLong(1);
+            if (currentId == null || currentId != id) {
+                finish();
+                currentId = id;
+                current = new LinkedHashMap<>();
+                roles = EnumSet.noneOf(Role.class);
+                for (int i = 0; i < fields.length; i++) {
+                    UserField field = fields[i];
+                    if (field == UserField.ROLES) {
+                        current.put(field.jsonName(), roles);
+                    } else {
+                        current.put(field.jsonName(), read(rs, i + 1, field));
+                    }
+                }
+            }
+            if (withRoles) {
+                String role = rs.getString(fields.length);
+                if (role != null) {
+                    roles.add(Role.valueOf(role));
+                }
+            }
+        }
+
+        // Hands on the last user; call once the query has returned
+        void finish() {
+            if (current != null) {
+                sink.accept(current);
+                current = null;
+            }
+        }
+
+        private static Object read(ResultSet rs, int index, UserField field) throws SQLException {
+            return switch (field) {
+                case ID -> rs.getLong(index);
+                case BIRTHDAY, CREATED_AT, UPDATED_AT -> rs.getObject(index, LocalDate.class);
+                case MFA_ENABLED -> rs.getBoolean(index);
+                default -> rs.getString(index);
+            };
+        }
+    }
+}
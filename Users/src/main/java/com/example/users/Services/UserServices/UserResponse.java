@@ -0,0 +1,13 @@
+package com.example.users.Services.UserServices;
+
+import com.example.users.Entity.User;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+
+// The User JSON plus mfaEnabled, which User no longer carries (MFA state lives in MfaInfo only)
+public record UserResponse(@JsonUnwrapped User user, boolean mfaEnabled) {
+
+    // Just created: MFA can only be enabled later, through /api/mfa
+    public static UserResponse created(User user) {
+        return new UserResponse(user, false);
+    }
+}
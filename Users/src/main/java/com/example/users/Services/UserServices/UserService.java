@@ -3,13 +3,18 @@ package com.example.users.Services.UserServices;
 
 import com.example.users.Entity.User;
 import com.example.users.Enum.Role;
+import com.example.users.Repository.MfaInfoRepository;
+import com.example.users.Repository.UserCredentials;
 import com.example.users.Repository.UserRepository;
+import com.example.users.security.PasswordHashingService;
+import com.example.users.security.TokenRevocation;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.HashSet;
-import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 
@@ -24,12 +29,24 @@ public class UserService {private final UserRepository userRepository;
     @Autowired
     private PasswordEncoder passwordEncoder;
 
-    public List<User> getAllUsers() {
-        return userRepository.findAll();
-    }
+    @Autowired
+    private CustomUserDetailsService customUserDetailsService;
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private UserUniquenessFilter userUniquenessFilter;
+
+    @Autowired
+    private TokenRevocation tokenRevocation;
+
+    @Autowired
+    private MfaInfoRepository mfaInfoRepository;
 
+    // Returned as JSON by the admin endpoints, so the roles come with it
     public Optional<User> getUserById(Long id) {
-        return userRepository.findById(id);
+        return userRepository.findAdminViewById(id);
     }
 
     public Optional<User> getUserByEmail(String email) {
@@ -37,12 +54,34 @@ public class UserService {private final UserRepository userRepository;
     }
 
     public User createUser(User user) {
-        if (userRepository.existsByEmail(user.getEmail())) {
+        // Only values the Bloom filter might have seen need the duplicate check query
+        if (userUniquenessFilter.mightContainEmail(user.getEmail())
+                && userRepository.existsByEmail(user.getEmail())) {
             throw new IllegalStateException("Email already in use.");
         }
+        if (userUniquenessFilter.mightContainIdentityNumber(user.getNumberOfIdentity())
+                && userRepository.existsByNumberOfIdentity(user.getNumberOfIdentity())) {
+            throw new IllegalStateException("Identity number already in use.");
+        }
         user.setPassword(passwordEncoder.encode(user.getPassword()));
-        return userRepository.save(user);
+        User savedUser = save(user);
+        userUniquenessFilter.add(savedUser);
+        return savedUser;
     }
+
+    // Called after a successful password check: re-hashes outdated hashes in the background
+    public void upgradePasswordHashIfNeeded(UserCredentials user, String rawPassword) {
+        String currentHash = user.password();
+        if (!passwordHashingService.needsRehash(currentHash)) {
+            return;
+        }
+        passwordHashingService.encodeInBackground(rawPassword).thenAccept(newHash -> {
+            if (userRepository.replacePasswordHash(user.id(), currentHash, newHash) > 0) {
+                customUserDetailsService.evict(user.email(), user.numberOfIdentity());
+            }
+        });
+    }
+
     public User updateUserRole(Long id, String role) {
         User user = getUserById(id).get();
         // Create a new mutable set instead of using Set.of() which creates an immutable set
@@ -61,11 +100,19 @@ public class UserService {private final UserRepository userRepository;
         // Set the new mutable set of roles
         user.setRoles(roles);
 
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        customUserDetailsService.evict(savedUser);
+        // Tokens carry the roles, so the old ones must not be honoured any more
+        tokenRevocation.revokeTokens(id);
+        return savedUser;
     }
     public User updateUser(Long id, User updatedUser) {
-        return userRepository.findById(id)
+        return userRepository.findAdminViewById(id)
                 .map(user -> {
+                    // The old email / identity number are evicted too, once the new ones are committed
+                    String oldEmail = user.getEmail();
+                    String oldNumberOfIdentity = user.getNumberOfIdentity();
+                    boolean rolesChanged = !Objects.equals(user.getRoles(), updatedUser.getRoles());
                     user.setFirstName(updatedUser.getFirstName());
                     user.setLastName(updatedUser.getLastName());
                     user.setEmail(updatedUser.getEmail());
@@ -74,15 +121,34 @@ public class UserService {private final UserRepository userRepository;
                     user.setNumberOfIdentity(updatedUser.getNumberOfIdentity());
                     user.setPhoneNumber(updatedUser.getPhoneNumber());
                     user.setRoles(updatedUser.getRoles());
-                    return userRepository.save(user);
+                    User savedUser = save(user);
+                    // After the commit, so a concurrent login cannot re-cache the old state
+                    customUserDetailsService.evict(oldEmail, oldNumberOfIdentity);
+                    customUserDetailsService.evict(savedUser);
+                    userUniquenessFilter.add(savedUser);
+                    if (rolesChanged) {
+                        tokenRevocation.revokeTokens(id);
+                    }
+                    return savedUser;
                 })
                 .orElseThrow(() -> new IllegalStateException("User not found."));
     }
 
     public void deleteUser(Long id) {
-        if (!userRepository.existsById(id)) {
-            throw new IllegalStateException("User not found.");
-        }
+        User user = userRepository.findById(id)
+                .orElseThrow(() -> new IllegalStateException("User not found."));
+        mfaInfoRepository.deleteByUserId(id);
         userRepository.deleteById(id);
+        customUserDetailsService.evict(user);
+        tokenRevocation.userDeleted(id);
+    }
+
+    // The unique constraints are the final arbiter for concurrent duplicates
+    private User save(User user) {
+        try {
+            return userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalStateException("Email or identity number already in use.");
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+package com.example.users.Services.UserServices;
+
+import com.example.users.Entity.User;
+import com.example.users.Repository.UserRepository;
+import com.example.users.Repository.UserUniqueKeys;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filters of registered emails and identity numbers, so registrations with
+ * definitely-new values skip the duplicate check query. The unique constraints on
+ * the users table stay the final arbiter.
+ * Until the startup load has finished every value is reported as "might exist".
+ */
+@Slf4j
+@Service
+public class UserUniquenessFilter {
+
+    private final UserRepository userRepository;
+    private final BloomFilter emails;
+    private final BloomFilter identityNumbers;
+    private volatile boolean ready;
+
+    public UserUniquenessFilter(UserRepository userRepository,
+                                @Value("${user-uniqueness.filter.expected-insertions:1000000}") long expectedInsertions,
+                                @Value("${user-uniqueness.filter.false-positive-probability:0.01}") double falsePositiveProbability) {
+        this.userRepository = userRepository;
+        this.emails = new BloomFilter(expectedInsertions, falsePositiveProbability);
+        this.identityNumbers = new BloomFilter(expectedInsertions, falsePositiveProbability);
+    }
+
+    // Streams only the two unique columns, rows are not kept in the persistence context
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        AtomicLong count = new AtomicLong();
+        try (Stream<UserUniqueKeys> keys = userRepository.streamUniqueKeys()) {
+            keys.forEach(key -> {
+                addEmail(key.email());
+                addIdentityNumber(key.numberOfIdentity());
+                count.incrementAndGet();
+            });
+        }
+        ready = true;
+        log.info("Loaded {} users into the registration uniqueness filter", count.get());
+    }
+
+    public void add(User user) {
+        addEmail(user.getEmail());
+        addIdentityNumber(user.getNumberOfIdentity());
+    }
+
+    public boolean mightContainEmail(String email) {
+        return !ready || email == null || emails.mightContain(normalize(email));
+    }
+
+    public boolean mightContainIdentityNumber(String numberOfIdentity) {
+        return !ready || numberOfIdentity == null || identityNumbers.mightContain(normalize(numberOfIdentity));
+    }
+
+    private void addEmail(String email) {
+        if (email != null) {
+            emails.add(normalize(email));
+        }
+    }
+
+    private void addIdentityNumber(String numberOfIdentity) {
+        if (numberOfIdentity != null) {
+            identityNumbers.add(normalize(numberOfIdentity));
+        }
+    }
+
+    // MySQL's default collation compares case-insensitively, so the filter must too
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
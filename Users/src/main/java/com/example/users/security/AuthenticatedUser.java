@@ -0,0 +1,28 @@
+package com.example.users.security;
+
+import com.example.users.Enum.Role;
+
+import java.security.Principal;
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Immutable principal built once per request from a verified JWT.
+ * Controllers receive it with {@code @AuthenticationPrincipal} instead of re-reading the Authorization header.
+ */
+public record AuthenticatedUser(Long userId, String email, Set<Role> roles, int tokenVersion,
+                                Instant issuedAt, Instant expiresAt) implements Principal {
+
+    public AuthenticatedUser {
+        roles = roles == null ? Set.of() : Set.copyOf(roles);
+    }
+
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    public boolean isExpired() {
+        return expiresAt != null && expiresAt.isBefore(Instant.now());
+    }
+}
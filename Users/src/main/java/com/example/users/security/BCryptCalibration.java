@@ -0,0 +1,66 @@
+package com.example.users.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+
+/**
+ * Picks the BCrypt work factor for this machine: the highest strength whose hash time
+ * stays within the configured target latency, never above the fleet-wide maximum.
+ * Meant for sizing a deployment: every instance must hash with the same strength, otherwise
+ * the fastest instance raises hashes on login that the slower ones then have to verify.
+ */
+@Slf4j
+public final class BCryptCalibration {
+
+    private static final String SAMPLE_PASSWORD = "calibration-password";
+    private static final int SAMPLES = 3;
+
+    private BCryptCalibration() {
+    }
+
+    // The pinned strength when one is configured (> 0), otherwise a calibrated one
+    public static int resolve(int pinnedStrength, Duration targetLatency, int minStrength, int maxStrength) {
+        if (pinnedStrength > 0) {
+            return pinnedStrength;
+        }
+        int strength = calibrate(targetLatency, minStrength, maxStrength);
+        log.warn("BCrypt strength is not pinned, set password.hashing.bcrypt-strength={} on every instance", strength);
+        return strength;
+    }
+
+    public static int calibrate(Duration targetLatency, int minStrength, int maxStrength) {
+        if (minStrength < 4 || maxStrength > 31 || minStrength > maxStrength) {
+            throw new IllegalArgumentException(
+                    "BCrypt strength range must be within 4..31, got " + minStrength + ".." + maxStrength);
+        }
+
+        // Warm up the JIT on a cheap hash so the first measurement is not dominated by interpretation
+        new BCryptPasswordEncoder(4).encode(SAMPLE_PASSWORD);
+
+        long nanosAtMin = Long.MAX_VALUE;
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(minStrength);
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.encode(SAMPLE_PASSWORD);
+            nanosAtMin = Math.min(nanosAtMin, System.nanoTime() - start);
+        }
+
+        int strength = strengthFor(nanosAtMin, targetLatency, minStrength, maxStrength);
+        log.info("BCrypt calibrated to strength {} (~{} ms per hash at {}, target {} ms, maximum {})",
+                strength, Duration.ofNanos(nanosAtMin).toMillis(), minStrength, targetLatency.toMillis(), maxStrength);
+        return strength;
+    }
+
+    // Each extra strength doubles the cost, so one measurement at the minimum is enough to extrapolate
+    static int strengthFor(long nanosAtMin, Duration targetLatency, int minStrength, int maxStrength) {
+        int strength = minStrength;
+        long estimate = nanosAtMin;
+        while (strength < maxStrength && estimate * 2 <= targetLatency.toNanos()) {
+            strength++;
+            estimate *= 2;
+        }
+        return strength;
+    }
+}
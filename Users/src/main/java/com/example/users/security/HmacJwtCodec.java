@@ -0,0 +1,267 @@
+package com.example.users.security;
+
+import com.example.users.Enum.Role;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.SignatureException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Fast path for HMAC-signed tokens with our fixed claim shape ({@code sub, roles, id, ver, iat, exp}).
+ * Reuses one {@link Mac} per thread and algorithm, compares pre-encoded header bytes instead of
+ * parsing the header, checks the signature in constant time and reads the payload with a flat
+ * scanner instead of building a JSON tree.
+ * <p>
+ * {@link #decode} returns {@code null} for tokens it does not recognise (other header, extra claims)
+ * so callers can fall back to the full JJWT parser.
+ * <p>
+ * Verification only: new tokens are ES256 ({@link JwtUtils}), these legacy tokens are accepted until they expire.
+ */
+public final class HmacJwtCodec {
+
+    private static final SignatureAlgorithm[] ALGORITHMS = {
+            SignatureAlgorithm.HS256, SignatureAlgorithm.HS384, SignatureAlgorithm.HS512
+    };
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec[] keys = new SecretKeySpec[ALGORITHMS.length];
+    // base64url({"alg":"HSxxx"}) + '.', exactly what JJWT 0.11.5 writes for these tokens
+    private final byte[][] encodedHeaders = new byte[ALGORITHMS.length][];
+
+    private final ThreadLocal<Mac[]> macs = ThreadLocal.withInitial(() -> new Mac[ALGORITHMS.length]);
+
+    public HmacJwtCodec(byte[] key) {
+        boolean usable = false;
+        for (int i = 0; i < ALGORITHMS.length; i++) {
+            SignatureAlgorithm algorithm = ALGORITHMS[i];
+            // Same rule as JJWT: a key may only be used with algorithms it is long enough for
+            if (key.length * 8 >= algorithm.getMinKeyLength()) {
+                keys[i] = new SecretKeySpec(key, algorithm.getJcaName());
+                usable = true;
+            }
+            String header = "{\"alg\":\"" + algorithm.getValue() + "\"}";
+            encodedHeaders[i] = (ENCODER.encodeToString(header.getBytes(StandardCharsets.US_ASCII)) + ".")
+                    .getBytes(StandardCharsets.US_ASCII);
+        }
+        if (!usable) {
+            throw new IllegalArgumentException("Key too short for HMAC-SHA");
+        }
+    }
+
+    /**
+     * Verify and read a token. Returns {@code null} if the token is not in the shape this codec handles.
+     *
+     * @throws SignatureException   if the signature does not match
+     * @throws ExpiredJwtException  if the token has expired
+     */
+    public AuthenticatedUser decode(String token) {
+        byte[] bytes = token.getBytes(StandardCharsets.US_ASCII);
+
+        int index = headerIndex(bytes);
+        int signatureDot = token.lastIndexOf('.');
+        if (index < 0 || keys[index] == null || signatureDot <= encodedHeaders[index].length) {
+            return null;
+        }
+
+        Mac mac = mac(index);
+        mac.update(bytes, 0, signatureDot);
+        byte[] expected = mac.doFinal();
+        byte[] actual;
+        try {
+            actual = decode(bytes, signatureDot + 1, bytes.length);
+        } catch (IllegalArgumentException e) {
+            throw new SignatureException("Invalid JWT signature encoding");
+        }
+        if (!MessageDigest.isEqual(expected, actual)) {
+            throw new SignatureException("JWT signature does not match locally computed signature");
+        }
+
+        byte[] payload;
+        try {
+            payload = decode(bytes, encodedHeaders[index].length, signatureDot);
+        } catch (IllegalArgumentException e) {
+            throw new MalformedJwtException("Invalid JWT payload encoding");
+        }
+        AuthenticatedUser user = new PayloadScanner(new String(payload, StandardCharsets.UTF_8)).scan();
+        if (user != null && user.isExpired()) {
+            throw new ExpiredJwtException(null, null, "JWT expired at " + user.expiresAt());
+        }
+        return user;
+    }
+
+    private static byte[] decode(byte[] source, int from, int to) {
+        ByteBuffer decoded = DECODER.decode(ByteBuffer.wrap(source, from, to - from));
+        byte[] result = decoded.array();
+        return decoded.remaining() == result.length ? result : Arrays.copyOf(result, decoded.remaining());
+    }
+
+    private int headerIndex(byte[] token) {
+        for (int i = 0; i < encodedHeaders.length; i++) {
+            byte[] header = encodedHeaders[i];
+            if (token.length > header.length && Arrays.equals(token, 0, header.length, header, 0, header.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Mac mac(int index) {
+        Mac[] threadMacs = macs.get();
+        Mac mac = threadMacs[index];
+        if (mac == null) {
+            try {
+                mac = Mac.getInstance(ALGORITHMS[index].getJcaName());
+                mac.init(keys[index]);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Unable to initialise " + ALGORITHMS[index].getJcaName(), e);
+            }
+            threadMacs[index] = mac;
+        }
+        return mac;
+    }
+
+    /**
+     * Reads a flat JSON object holding only our claims. Any other member or value type makes
+     * {@link #scan} return null so the caller falls back to JJWT.
+     */
+    private static final class PayloadScanner {
+
+        private final String json;
+        private int pos;
+
+        private PayloadScanner(String json) {
+            this.json = json;
+        }
+
+        AuthenticatedUser scan() {
+            String subject = null;
+            Set<Role> roles = EnumSet.noneOf(Role.class);
+            Long id = null;
+            int version = 0;
+            Long issuedAt = null;
+            Long expiresAt = null;
+
+            try {
+                expect('{');
+                if (peek() != '}') {
+                    do {
+                        String name = readString();
+                        expect(':');
+                        switch (name) {
+                            case "sub" -> subject = readString();
+                            case "roles" -> readRoles(roles);
+                            case "id" -> id = readLong();
+                            case "ver" -> version = Math.toIntExact(readLong());
+                            case "iat" -> issuedAt = readLong();
+                            case "exp" -> expiresAt = readLong();
+                            default -> {
+                                return null;
+                            }
+                        }
+                    } while (tryConsume(','));
+                }
+                expect('}');
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | ArithmeticException e) {
+                return null;
+            }
+
+            return new AuthenticatedUser(id, subject, roles, version,
+                    issuedAt == null ? null : Instant.ofEpochSecond(issuedAt),
+                    expiresAt == null ? null : Instant.ofEpochSecond(expiresAt));
+        }
+
+        private void readRoles(Set<Role> roles) {
+            expect('[');
+            if (tryConsume(']')) {
+                return;
+            }
+            do {
+                roles.add(Role.valueOf(readString()));
+            } while (tryConsume(','));
+            expect(']');
+        }
+
+        private long readLong() {
+            skipWhitespace();
+            int start = pos;
+            if (json.charAt(pos) == '-') {
+                pos++;
+            }
+            while (pos < json.length() && Character.isDigit(json.charAt(pos))) {
+                pos++;
+            }
+            return Long.parseLong(json, start, pos, 10);
+        }
+
+        private String readString() {
+            expect('"');
+            StringBuilder value = null;
+            int start = pos;
+            while (true) {
+                char c = json.charAt(pos++);
+                if (c == '"') {
+                    return value == null ? json.substring(start, pos - 1) : value.toString();
+                }
+                if (c == '\\') {
+                    if (value == null) {
+                        value = new StringBuilder(json.substring(start, pos - 1));
+                    }
+                    char escaped = json.charAt(pos++);
+                    switch (escaped) {
+                        case 'n' -> value.append('\n');
+                        case 'r' -> value.append('\r');
+                        case 't' -> value.append('\t');
+                        case 'b' -> value.append('\b');
+                        case 'f' -> value.append('\f');
+                        case 'u' -> {
+                            value.append((char) Integer.parseInt(json, pos, pos + 4, 16));
+                            pos += 4;
+                        }
+                        default -> value.append(escaped);
+                    }
+                } else if (value != null) {
+                    value.append(c);
+                }
+            }
+        }
+
+        private char peek() {
+            skipWhitespace();
+            return json.charAt(pos);
+        }
+
+        private boolean tryConsume(char c) {
+            if (peek() == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!tryConsume(c)) {
+                throw new IllegalArgumentException("Expected '" + c + "' at " + pos);
+            }
+        }
+
+        private void skipWhitespace() {
+            while (Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package com.example.users.security;
 
+import com.example.users.Enum.AuthenticationMode;
 import com.example.users.Services.UserServices.CustomUserDetailsService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
@@ -14,6 +18,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 @Component
@@ -25,6 +30,18 @@ public class JWTFilter extends OncePerRequestFilter {
     @Autowired
     private CustomUserDetailsService customUserDetailsService;
 
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Autowired
+    private GatewayIdentityVerifier gatewayIdentityVerifier;
+
+    @Autowired
+    private TokenRevocation tokenRevocation;
+
+    @Value("${jwt.auth.mode:DATABASE}")
+    private AuthenticationMode authenticationMode;
+
     // List of paths that should bypass authentication
     private static final List<String> PUBLIC_PATHS = Arrays.asList(
             "/api/auth/login",
@@ -32,7 +49,8 @@ public class JWTFilter extends OncePerRequestFilter {
             "/api/auth/register-admin",
             "/api/auth/verify-mfa",
             "/api/auth/password",
-            "/jwt-reset"
+            "/jwt-reset",
+            "/.well-known/jwks.json"
     );
 
     @Override
@@ -50,30 +68,59 @@ public class JWTFilter extends OncePerRequestFilter {
 
         String token = request.getHeader("Authorization");
 
-        // Process JWT only for protected paths
-        if (token != null && token.startsWith("Bearer ")) {
-            try {
+        try {
+            AuthenticatedUser principal = null;
+
+            // Behind the Gateway the token was already verified at the edge
+            if (authenticationMode == AuthenticationMode.GATEWAY) {
+                principal = gatewayIdentityVerifier.verify(request.getHeader(gatewayIdentityVerifier.getHeaderName()));
+            }
+
+            // Process JWT only for protected paths
+            if (principal == null && token != null && token.startsWith("Bearer ")) {
                 token = token.substring(7);
-                String username = jwtUtil.extractUsername(token);
-
-                if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                    if (jwtUtil.validateToken(token, username)) {
-                        UserDetails userDetails = customUserDetailsService.loadUserByUsername(username);
-                        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                                userDetails, null, userDetails.getAuthorities());
-                        SecurityContextHolder.getContext().setAuthentication(authentication);
-                    }
+
+                // Repeat requests with the same token skip signature verification
+                principal = verifiedTokenCache.get(token);
+                if (principal == null) {
+                    // Parsing verifies the signature and rejects expired tokens
+                    principal = jwtUtil.parseToken(token);
+                    verifiedTokenCache.put(token, principal);
                 }
-            } catch (Exception e) {
-                // Log the error but don't block the request - let the security context remain empty
-                System.err.println("JWT Authentication error: " + e.getMessage());
             }
+
+            // Tokens issued before the user's last password or role change are revoked
+            if (principal != null && !tokenRevocation.isCurrent(principal)) {
+                principal = null;
+            }
+
+            if (principal != null && principal.email() != null
+                    && SecurityContextHolder.getContext().getAuthentication() == null) {
+                // Controllers receive the parsed token as @AuthenticationPrincipal
+                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                        principal, null, resolveAuthorities(principal));
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+            }
+        } catch (Exception e) {
+            // Log the error but don't block the request - let the security context remain empty
+            System.err.println("JWT Authentication error: " + e.getMessage());
         }
 
         filterChain.doFilter(request, response);
     }
 
-    private boolean isPublicPath(String path) {
+    private Collection<? extends GrantedAuthority> resolveAuthorities(AuthenticatedUser principal) {
+        if (authenticationMode != AuthenticationMode.DATABASE) {
+            // The signature was verified, so the roles claim can be trusted as is
+            return principal.roles().stream()
+                    .map(role -> new SimpleGrantedAuthority(role.name()))
+                    .toList();
+        }
+        UserDetails userDetails = customUserDetailsService.loadUserByUsername(principal.email());
+        return userDetails.getAuthorities();
+    }
+
+    static boolean isPublicPath(String path) {
         return PUBLIC_PATHS.stream().anyMatch(path::startsWith);
     }
 }
\ No newline at end of file
@@ -0,0 +1,127 @@
+package com.example.users.security;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The ES256 keys this service signs and verifies tokens with.
+ * Several keys can be active at once so a new key can be published before it is used
+ * and an old one kept until the tokens it signed have expired.
+ */
+@Slf4j
+@Component
+public class JwtKeySet {
+
+    private final String activeKid;
+    private final PrivateKey signingKey;
+    private final Map<String, PublicKey> verificationKeys;
+    private final JWKSet jwkSet;
+    private final String jwksJson;
+    private final Duration jwksMaxAge;
+
+    public JwtKeySet(JwtSigningProperties properties) {
+        Map<String, PublicKey> publicKeys = new LinkedHashMap<>();
+        PrivateKey activePrivateKey = null;
+        String kid = properties.getActiveKid();
+
+        try {
+            KeyFactory keyFactory = KeyFactory.getInstance("EC");
+            for (Map.Entry<String, JwtSigningProperties.KeyProperties> entry : properties.getKeys().entrySet()) {
+                JwtSigningProperties.KeyProperties key = entry.getValue();
+                // Key material comes from the environment; an unset variable leaves the key out
+                if (!StringUtils.hasText(key.getPublicKey())) {
+                    continue;
+                }
+                publicKeys.put(entry.getKey(), keyFactory.generatePublic(
+                        new X509EncodedKeySpec(Base64.getDecoder().decode(key.getPublicKey()))));
+                if (entry.getKey().equals(kid) && StringUtils.hasText(key.getPrivateKey())) {
+                    activePrivateKey = keyFactory.generatePrivate(
+                            new PKCS8EncodedKeySpec(Base64.getDecoder().decode(key.getPrivateKey())));
+                }
+            }
+
+            if (activePrivateKey == null && properties.isAllowEphemeralKey()) {
+                // Dev only: tokens will not survive a restart and instances will not share keys
+                KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+                generator.initialize(new ECGenParameterSpec("secp256r1"));
+                KeyPair keyPair = generator.generateKeyPair();
+                kid = "ephemeral-" + UUID.randomUUID();
+                publicKeys.put(kid, keyPair.getPublic());
+                activePrivateKey = keyPair.getPrivate();
+                log.warn("No signing key configured for jwt.signing.active-kid, signing with ephemeral key {}", kid);
+            }
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid jwt.signing key material", e);
+        }
+
+        if (activePrivateKey == null) {
+            throw new IllegalStateException("jwt.signing.active-kid must name a configured key with a private key "
+                    + "(JWT_SIGNING_PRIVATE_KEY / JWT_SIGNING_PUBLIC_KEY)");
+        }
+
+        List<JWK> jwks = new ArrayList<>();
+        publicKeys.forEach((keyId, publicKey) -> jwks.add(new ECKey.Builder(Curve.P_256, (ECPublicKey) publicKey)
+                .keyID(keyId)
+                .keyUse(KeyUse.SIGNATURE)
+                .algorithm(JWSAlgorithm.ES256)
+                .build()));
+
+        this.activeKid = kid;
+        this.signingKey = activePrivateKey;
+        this.verificationKeys = Map.copyOf(publicKeys);
+        this.jwkSet = new JWKSet(jwks);
+        // Serialized once, the endpoint only ever returns public keys
+        this.jwksJson = jwkSet.toString(true);
+        this.jwksMaxAge = properties.getJwksMaxAge();
+    }
+
+    public String getActiveKid() {
+        return activeKid;
+    }
+
+    public PrivateKey getSigningKey() {
+        return signingKey;
+    }
+
+    // Returns null for unknown key ids
+    public PublicKey getVerificationKey(String kid) {
+        return verificationKeys.get(kid);
+    }
+
+    public JWKSet getJwkSet() {
+        return jwkSet;
+    }
+
+    public String getJwksJson() {
+        return jwksJson;
+    }
+
+    public Duration getJwksMaxAge() {
+        return jwksMaxAge;
+    }
+}
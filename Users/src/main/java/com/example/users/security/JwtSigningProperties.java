@@ -0,0 +1,39 @@
+package com.example.users.security;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ES256 signing keys, bound from {@code jwt.signing.*}.
+ * Every configured key is published in the JWKS and accepted for verification;
+ * only {@code active-kid} is used to sign new tokens.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "jwt.signing")
+public class JwtSigningProperties {
+
+    private String activeKid;
+
+    // kid -> key material
+    private Map<String, KeyProperties> keys = new LinkedHashMap<>();
+
+    // Dev only: sign with a key generated at startup when the active key has no private key configured
+    private boolean allowEphemeralKey = false;
+
+    // Cache-Control max-age of /.well-known/jwks.json
+    private Duration jwksMaxAge = Duration.ofMinutes(15);
+
+    @Data
+    public static class KeyProperties {
+        // Base64 PKCS#8 DER, may be omitted for retired keys that are only kept for verification
+        private String privateKey;
+        // Base64 X.509 DER
+        private String publicKey;
+    }
+}
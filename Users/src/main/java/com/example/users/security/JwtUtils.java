@@ -3,14 +3,22 @@ package com.example.users.security;
 
 import com.example.users.Enum.Role;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
+import java.time.Duration;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -18,87 +26,106 @@ import java.util.stream.Collectors;
 @Component
 public class JwtUtils {
 
-    private final Key SECRET_KEY;
+    private final JwtKeySet keySet;
 
+    // HMAC key of tokens issued before ES256 signing, accepted until they expire (null when jwt.secret is unset)
+    private final Key LEGACY_SECRET_KEY;
 
+    // Allocation-light verification of legacy HMAC tokens of our own claim shape, JJWT handles anything else
+    private final HmacJwtCodec legacyCodec;
 
-    public JwtUtils(@Value("${jwt.secret}") String secret) {
-        this.SECRET_KEY = Keys.hmacShaKeyFor(Base64.getEncoder().encode(secret.getBytes()));
+    // Parsers are immutable and thread-safe, build it once
+    private final JwtParser parser;
+
+    public JwtUtils(JwtKeySet keySet, @Value("${jwt.secret:}") String legacySecret) {
+        this.keySet = keySet;
+        byte[] legacyKeyBytes = legacySecret.isBlank() ? null : Base64.getEncoder().encode(legacySecret.getBytes());
+        this.LEGACY_SECRET_KEY = legacyKeyBytes == null ? null : Keys.hmacShaKeyFor(legacyKeyBytes);
+        this.legacyCodec = legacyKeyBytes == null ? null : new HmacJwtCodec(legacyKeyBytes);
+        this.parser = Jwts.parserBuilder().setSigningKeyResolver(new KidSigningKeyResolver()).build();
+    }
+
+    // Method to generate JWT Token with email, roles, userId and the user's current token version
+    public String generateToken(String email, Set<Role> roles, Long userId, int tokenVersion) {
+        return generateToken(email, roles, userId, tokenVersion, Duration.ofHours(10));
     }
 
-    // Method to generate JWT Token with email, roles, and userId
-    public String generateToken(String email, Set<Role> roles, Long userId) {
+    // Every token is signed with the active ES256 key; jwt.secret only verifies legacy tokens
+    public String generateToken(String email, Set<Role> roles, Long userId, int tokenVersion, Duration validity) {
         List<String> roleNames = roles.stream().map(Enum::name).collect(Collectors.toList()); // Convert Set<Role> to List<String>
+        long now = System.currentTimeMillis();
 
         return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, keySet.getActiveKid())
                 .setSubject(email) // Use email as unique identifier
                 .claim("roles", roleNames) // Store roles as a list of strings
                 .claim("id", userId) // Store userId
-                .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 10)) // 10 hours expiration
-                .signWith(SECRET_KEY)
+                .claim("ver", tokenVersion) // Revoked once the user's token version is bumped
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + validity.toMillis()))
+                .signWith(keySet.getSigningKey(), SignatureAlgorithm.ES256)
                 .compact();
     }
 
-
-    // Method to validate the token
-    public boolean validateToken(String token, String email) {
-        try {
-            String extractedEmail = extractUsername(token);
-            return (email.equals(extractedEmail) && !isTokenExpired(token));
-        } catch (Exception e) {
-            return false;
+    /**
+     * Verify the token signature and expiry and read all claims in a single parse.
+     * Throws a {@link io.jsonwebtoken.JwtException} if the token is invalid or expired.
+     */
+    public AuthenticatedUser parseToken(String token) {
+        if (legacyCodec != null) {
+            AuthenticatedUser user = legacyCodec.decode(token);
+            if (user != null) {
+                return user;
+            }
         }
-    }
-
-
-    // Extract the claims from the token
-    public Claims extractClaims(String token) {
-        return Jwts.parser().setSigningKey(SECRET_KEY).parseClaimsJws(token).getBody();
-    }
 
-    // Extract the username (email) from the token
-    public String extractUsername(String token) {
-        return extractClaims(token).getSubject();
+        Claims claims = parser.parseClaimsJws(token).getBody();
+
+        Object id = claims.get("id");
+        Object version = claims.get("ver");
+        return new AuthenticatedUser(
+                id == null ? null : Long.parseLong(id.toString()),
+                claims.getSubject(),
+                toRoles(claims.get("roles")),
+                // Tokens issued before versioning count as version 0
+                version == null ? 0 : Integer.parseInt(version.toString()),
+                claims.getIssuedAt() == null ? null : claims.getIssuedAt().toInstant(),
+                claims.getExpiration() == null ? null : claims.getExpiration().toInstant()
+        );
     }
 
-    // Extract roles from the token
-    public Set<Role> extractRoles(String token) {
-        return (Set<Role>) extractClaims(token).get("roles");
+    public String generateLongLifeToken(String email, Set<Role> roles, Long userId, int tokenVersion) {
+        return generateToken(email, roles, userId, tokenVersion, Duration.ofDays(365)); // 1 year expiration
     }
 
-    // Extract the user ID from the token
-    public Long extractUserId(String token) {
-        try {
-            Claims claims = Jwts.parser()
-                    .setSigningKey(SECRET_KEY)
-                    .parseClaimsJws(token)
-                    .getBody();
-
-            // Extract the userId from the "id" claim, not from the subject
-            return Long.parseLong(claims.get("id").toString());
-        } catch (Exception e) {
-            throw new RuntimeException("Invalid token", e);
+    // Picks the verification key from the kid header; tokens without kid are legacy HMAC tokens
+    private class KidSigningKeyResolver extends SigningKeyResolverAdapter {
+        @Override
+        public Key resolveSigningKey(JwsHeader header, Claims claims) {
+            String kid = header.getKeyId();
+            if (kid == null) {
+                if (LEGACY_SECRET_KEY == null) {
+                    throw new UnsupportedJwtException("Token has no key id");
+                }
+                return LEGACY_SECRET_KEY;
+            }
+            Key key = keySet.getVerificationKey(kid);
+            if (key == null) {
+                throw new UnsupportedJwtException("Unknown key id: " + kid);
+            }
+            return key;
         }
     }
-    public String generateLongLifeToken(String email, Set<Role> roles, Long userId) {
-        List<String> roleNames = roles.stream().map(Enum::name).collect(Collectors.toList());
 
-        return Jwts.builder()
-                .setSubject(email)
-                .claim("roles", roleNames)
-                .claim("id", userId)
-                .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + 1000L * 60 * 60 * 24 * 365)) // 1 year expiration
-                .signWith(SECRET_KEY)
-                .compact();
-    }
-
-
-    // Check if the token is expired
-    private boolean isTokenExpired(String token) {
-        return extractClaims(token).getExpiration().before(new Date());
+    // Roles are stored as a list of enum names
+    private static Set<Role> toRoles(Object rolesClaim) {
+        Set<Role> roles = EnumSet.noneOf(Role.class);
+        if (rolesClaim instanceof Collection<?> roleNames) {
+            for (Object roleName : roleNames) {
+                roles.add(Role.valueOf(roleName.toString()));
+            }
+        }
+        return roles;
     }
 
 }
-
@@ -0,0 +1,91 @@
+package com.example.users.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Brute-force protection for the password endpoints. Failed attempts are counted per
+ * client IP and per email over a sliding window; once either is over its limit, further
+ * attempts are rejected before the user lookup and the BCrypt compare.
+ * Memory is fixed by the sketch dimensions, whatever the attack volume.
+ */
+@Component
+public class LoginThrottle {
+
+    private final boolean enabled;
+    private final int maxFailuresPerIp;
+    private final int maxFailuresPerEmail;
+    private final SlidingCountMinSketch failuresByIp;
+    private final SlidingCountMinSketch failuresByEmail;
+
+    private final Counter rejectedByIp;
+    private final Counter rejectedByEmail;
+
+    public LoginThrottle(MeterRegistry meterRegistry,
+                         @Value("${login.throttle.enabled:true}") boolean enabled,
+                         @Value("${login.throttle.window:PT15M}") Duration window,
+                         @Value("${login.throttle.max-failures-per-ip:50}") int maxFailuresPerIp,
+                         @Value("${login.throttle.max-failures-per-email:10}") int maxFailuresPerEmail,
+                         @Value("${login.throttle.buckets:15}") int buckets,
+                         @Value("${login.throttle.stripes:16}") int stripes,
+                         @Value("${login.throttle.sketch-width:1024}") int width,
+                         @Value("${login.throttle.sketch-depth:4}") int depth) {
+        this.enabled = enabled;
+        this.maxFailuresPerIp = maxFailuresPerIp;
+        this.maxFailuresPerEmail = maxFailuresPerEmail;
+        this.failuresByIp = new SlidingCountMinSketch(stripes, width, depth, buckets, window);
+        this.failuresByEmail = new SlidingCountMinSketch(stripes, width, depth, buckets, window);
+
+        this.rejectedByIp = Counter.builder("login.throttle.rejected")
+                .description("Login attempts rejected because of too many recent failures")
+                .tag("key", "ip")
+                .register(meterRegistry);
+        this.rejectedByEmail = Counter.builder("login.throttle.rejected")
+                .description("Login attempts rejected because of too many recent failures")
+                .tag("key", "email")
+                .register(meterRegistry);
+    }
+
+    // Call before looking the user up; throws when the IP or the email is over its limit
+    public void checkAllowed(String clientIp, String email) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (clientIp != null && failuresByIp.estimate(clientIp, now) >= maxFailuresPerIp) {
+            rejectedByIp.increment();
+            throw new LoginThrottledException(retryAfter(failuresByIp, now));
+        }
+        if (email != null && failuresByEmail.estimate(normalize(email), now) >= maxFailuresPerEmail) {
+            rejectedByEmail.increment();
+            throw new LoginThrottledException(retryAfter(failuresByEmail, now));
+        }
+    }
+
+    public void recordFailure(String clientIp, String email) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (clientIp != null) {
+            failuresByIp.add(clientIp, now);
+        }
+        if (email != null) {
+            failuresByEmail.add(normalize(email), now);
+        }
+    }
+
+    private static Duration retryAfter(SlidingCountMinSketch sketch, long now) {
+        Duration wait = sketch.untilNextBucket(now);
+        return wait.compareTo(Duration.ofSeconds(1)) < 0 ? Duration.ofSeconds(1) : wait;
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
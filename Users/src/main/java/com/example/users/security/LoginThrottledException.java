@@ -0,0 +1,18 @@
+package com.example.users.security;
+
+import java.time.Duration;
+
+// Thrown when a client IP or an email has too many recent failed logins, mapped to 429 + Retry-After
+public class LoginThrottledException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public LoginThrottledException(Duration retryAfter) {
+        super("Too many failed login attempts, please retry later");
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
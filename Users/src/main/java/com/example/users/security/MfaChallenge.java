@@ -0,0 +1,9 @@
+package com.example.users.security;
+
+import com.example.users.Enum.Role;
+
+import java.util.Set;
+
+// What the second login phase needs, captured when the password check succeeds
+public record MfaChallenge(Long userId, String email, Set<Role> roles, int tokenVersion, String secret) {
+}
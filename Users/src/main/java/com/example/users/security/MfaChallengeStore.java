@@ -0,0 +1,74 @@
+package com.example.users.security;
+
+import com.example.users.Enum.Role;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pending two-phase logins. A successful password step stores the user id, roles and
+ * TOTP secret under an opaque random id, so verify-mfa needs no database access.
+ * Entries expire after the TTL, the store is capped in size, and a challenge is
+ * dropped after too many wrong codes or once it has been used.
+ */
+@Component
+public class MfaChallengeStore {
+
+    private static final int ID_BYTES = 32;
+
+    private final SecureRandom random = new SecureRandom();
+    private final Cache<String, Entry> challenges;
+    private final int maxAttempts;
+
+    public MfaChallengeStore(@Value("${mfa.challenge.ttl:PT5M}") Duration ttl,
+                             @Value("${mfa.challenge.maximum-size:100000}") long maximumSize,
+                             @Value("${mfa.challenge.max-attempts:5}") int maxAttempts,
+                             MeterRegistry meterRegistry) {
+        this.maxAttempts = maxAttempts;
+        this.challenges = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, challenges, "mfa.challenges");
+    }
+
+    // Returns the opaque challenge id to hand to the client
+    public String create(Long userId, String email, Set<Role> roles, int tokenVersion, String secret) {
+        byte[] bytes = new byte[ID_BYTES];
+        random.nextBytes(bytes);
+        String challengeId = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        challenges.put(challengeId, new Entry(new MfaChallenge(userId, email, roles, tokenVersion, secret), new AtomicInteger(maxAttempts)));
+        return challengeId;
+    }
+
+    // Null when the id is unknown, expired, already used or out of attempts
+    public MfaChallenge get(String challengeId) {
+        Entry entry = challenges.getIfPresent(challengeId);
+        return entry == null ? null : entry.challenge();
+    }
+
+    public void recordFailure(String challengeId) {
+        Entry entry = challenges.getIfPresent(challengeId);
+        if (entry != null && entry.remainingAttempts().decrementAndGet() <= 0) {
+            challenges.asMap().remove(challengeId, entry);
+        }
+    }
+
+    // Removes the challenge; only one of several concurrent verifications gets true
+    public boolean consume(String challengeId) {
+        return challenges.asMap().remove(challengeId) != null;
+    }
+
+    private record Entry(MfaChallenge challenge, AtomicInteger remainingAttempts) {
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.users.security;
+
+import java.time.Duration;
+
+// Thrown when the password-hashing executor cannot take more work, mapped to 503 + Retry-After
+public class PasswordHashingSaturatedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public PasswordHashingSaturatedException(Duration retryAfter) {
+        super("Too many concurrent password checks, please retry later");
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
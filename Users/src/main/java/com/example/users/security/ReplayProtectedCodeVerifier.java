@@ -0,0 +1,190 @@
+package com.example.users.security;
+
+import dev.samstevens.totp.code.CodeVerifier;
+import dev.samstevens.totp.time.TimeProvider;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TOTP verifier (HMAC-SHA1, 6 digits, RFC 6238) that never accepts a time step at or below the
+ * last one accepted for a secret (RFC 6238 section 5.2), so neither a replayed code nor an older
+ * code still inside the window gets through. The codes of all accepted windows are computed in
+ * one pass with a per-thread {@link Mac}. The last accepted step is kept per secret fingerprint;
+ * entries that fell out of the window are swept once per time step.
+ */
+public class ReplayProtectedCodeVerifier implements CodeVerifier {
+
+    private static final int DIGITS = 6;
+    private static final int MODULUS = 1_000_000;
+
+    private final TimeProvider timeProvider;
+    private final int periodSeconds;
+    private final int allowedDiscrepancy;
+    // Secret fingerprint -> last accepted time step
+    private final ConcurrentHashMap<Long, Long> lastAcceptedSteps = new ConcurrentHashMap<>();
+    private final AtomicLong sweptStep = new AtomicLong(Long.MIN_VALUE);
+    private final long seed = ThreadLocalRandom.current().nextLong();
+
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(() -> {
+        try {
+            return Mac.getInstance("HmacSHA1");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA1 not available", e);
+        }
+    });
+    private final ThreadLocal<byte[]> counterBuffers = ThreadLocal.withInitial(() -> new byte[8]);
+    private final ThreadLocal<byte[]> hashBuffers = ThreadLocal.withInitial(() -> new byte[20]);
+
+    public ReplayProtectedCodeVerifier(TimeProvider timeProvider, int periodSeconds, int allowedDiscrepancy) {
+        this.timeProvider = timeProvider;
+        this.periodSeconds = periodSeconds;
+        this.allowedDiscrepancy = allowedDiscrepancy;
+    }
+
+    @Override
+    public boolean isValidCode(String secret, String code) {
+        int expected = parseCode(code);
+        if (secret == null || expected < 0) {
+            return false;
+        }
+        byte[] key = Base32.decode(secret);
+        if (key.length == 0) {
+            return false;
+        }
+
+        long currentStep = Math.floorDiv(timeProvider.getTime(), periodSeconds);
+        long matchedStep = Long.MIN_VALUE;
+        try {
+            Mac mac = macs.get();
+            mac.init(new SecretKeySpec(key, "HmacSHA1"));
+            // Check every window without an early exit, so timing does not reveal which one matched
+            for (long step = currentStep - allowedDiscrepancy; step <= currentStep + allowedDiscrepancy; step++) {
+                if (generate(mac, step) == expected) {
+                    matchedStep = step;
+                }
+            }
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+        return matchedStep != Long.MIN_VALUE && markUsed(secret, matchedStep, currentStep);
+    }
+
+    // False when this secret has already been accepted for this or a later time step
+    private boolean markUsed(String secret, long step, long currentStep) {
+        sweep(currentStep);
+        Long fingerprint = fingerprint(secret);
+        while (true) {
+            Long last = lastAcceptedSteps.get(fingerprint);
+            if (last == null) {
+                if (lastAcceptedSteps.putIfAbsent(fingerprint, step) == null) {
+                    return true;
+                }
+            } else if (last >= step) {
+                return false;
+            } else if (lastAcceptedSteps.replace(fingerprint, last, step)) {
+                return true;
+            }
+        }
+    }
+
+    // Steps below the window can never be matched again, so their entries no longer reject anything
+    private void sweep(long currentStep) {
+        long swept = sweptStep.get();
+        if (currentStep > swept && sweptStep.compareAndSet(swept, currentStep)) {
+            long oldestAcceptable = currentStep - allowedDiscrepancy;
+            lastAcceptedSteps.values().removeIf(step -> step < oldestAcceptable);
+        }
+    }
+
+    // Number of secrets with a tracked step, for tests
+    int trackedSecrets() {
+        return lastAcceptedSteps.size();
+    }
+
+    private int generate(Mac mac, long step) throws GeneralSecurityException {
+        byte[] counter = counterBuffers.get();
+        for (int i = 7; i >= 0; i--) {
+            counter[i] = (byte) step;
+            step >>>= 8;
+        }
+        byte[] hash = hashBuffers.get();
+        mac.update(counter);
+        mac.doFinal(hash, 0);
+        int offset = hash[hash.length - 1] & 0xF;
+        int binary = ((hash[offset] & 0x7F) << 24)
+                | ((hash[offset + 1] & 0xFF) << 16)
+                | ((hash[offset + 2] & 0xFF) << 8)
+                | (hash[offset + 3] & 0xFF);
+        return binary % MODULUS;
+    }
+
+    // -1 unless the code is exactly six ASCII digits
+    private static int parseCode(String code) {
+        if (code == null || code.length() != DIGITS) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < DIGITS; i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // Secrets are not kept in the used set, only a seeded 64-bit fingerprint of them
+    private long fingerprint(String secret) {
+        long h = seed;
+        for (int i = 0; i < secret.length(); i++) {
+            h ^= secret.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // RFC 4648 base32 as produced by the secret generator; padding and case are ignored
+    private static final class Base32 {
+
+        private static byte[] decode(String value) {
+            byte[] out = new byte[value.length() * 5 / 8];
+            int buffer = 0;
+            int bits = 0;
+            int length = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                int digit;
+                if (c >= 'A' && c <= 'Z') {
+                    digit = c - 'A';
+                } else if (c >= 'a' && c <= 'z') {
+                    digit = c - 'a';
+                } else if (c >= '2' && c <= '7') {
+                    digit = c - '2' + 26;
+                } else if (c == '=') {
+                    break;
+                } else {
+                    return new byte[0];
+                }
+                buffer = (buffer << 5) | digit;
+                bits += 5;
+                if (bits >= 8) {
+                    out[length++] = (byte) (buffer >>> (bits - 8));
+                    bits -= 8;
+                }
+            }
+            return length == out.length ? out : Arrays.copyOf(out, length);
+        }
+    }
+}
@@ -1,27 +1,36 @@
 package com.example.users.security;
 
 import com.example.users.Services.UserServices.CustomUserDetailsService;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
-import javax.crypto.spec.SecretKeySpec;
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
 
 @Configuration
 @EnableWebSecurity
+// For rules a path cannot express, e.g. the NDJSON export that shares GET /api/users with the paged list
+@EnableMethodSecurity
 public class SecurityConfig {
 
     @Autowired
@@ -30,13 +39,16 @@ public class SecurityConfig {
     @Autowired
     private CustomUserDetailsService customUserDetailsService;
 
-    @Value("${jwt.secret}")
-    private String jwtSecret;
+    @Autowired
+    private JwtKeySet jwtKeySet;
 
+    // Verifies against the same keys JwtUtils signs with and /.well-known/jwks.json publishes
     @Bean
     public JwtDecoder jwtDecoder() {
-        var secretKey = new SecretKeySpec(jwtSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
-        return NimbusJwtDecoder.withSecretKey(secretKey).build();
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(
+                JWSAlgorithm.ES256, new ImmutableJWKSet<>(jwtKeySet.getJwkSet())));
+        return new NimbusJwtDecoder(jwtProcessor);
     }
 
     @Bean
@@ -47,8 +59,11 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/api/auth/**").permitAll() // Permit login & registration
                         .requestMatchers("/uploads/**").permitAll()
+                        .requestMatchers("/.well-known/jwks.json").permitAll()
                         .requestMatchers("/api/auth/verify-mfa").permitAll()
                         .requestMatchers("/api/mfa/**").authenticated()
+                        // Bulk import can create admins
+                        .requestMatchers("/api/users/import").hasAuthority("ADMIN")
                         // JWT reset endpoints
                         .requestMatchers("/jwt-reset/**").permitAll()
                         .anyRequest().authenticated() // Protect other requests
@@ -59,9 +74,18 @@ public class SecurityConfig {
                 .build();
     }
 
+    // New hashes are stored as {bcrypt}..., legacy hashes without a prefix are still matched as BCrypt
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${password.hashing.bcrypt-strength:12}") int strength,
+                                           @Value("${password.hashing.target-latency:PT0.25S}") Duration targetLatency,
+                                           @Value("${password.hashing.min-strength:10}") int minStrength,
+                                           @Value("${password.hashing.max-strength:14}") int maxStrength) {
+        int bcryptStrength = BCryptCalibration.resolve(strength, targetLatency, minStrength, maxStrength);
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+
+        DelegatingPasswordEncoder passwordEncoder = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        passwordEncoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return passwordEncoder;
     }
 
     @Bean
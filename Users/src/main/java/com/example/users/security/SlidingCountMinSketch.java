@@ -0,0 +1,128 @@
+package com.example.users.security;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Approximate per-key event counts over a sliding window, in a fixed amount of memory.
+ * The window is split into time buckets, each holding a count-min sketch; buckets are
+ * reset lazily when their slot comes round again. Keys are spread over independently
+ * locked stripes so concurrent logins rarely contend. Estimates never undercount, they
+ * can only overcount on hash collisions.
+ */
+final class SlidingCountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final int buckets;
+    private final long bucketMillis;
+    private final int stripeShift;
+    private final Stripe[] stripes;
+    // Per-process seed, so colliding keys cannot be precomputed to lock out someone else
+    private final long seed = ThreadLocalRandom.current().nextLong();
+
+    SlidingCountMinSketch(int stripeCount, int width, int depth, int buckets, Duration window) {
+        if (Integer.bitCount(stripeCount) != 1 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Stripe count and width must be powers of two");
+        }
+        this.depth = depth;
+        this.width = width;
+        this.buckets = buckets;
+        this.bucketMillis = Math.max(1, window.toMillis() / buckets);
+        this.stripeShift = 64 - Integer.numberOfTrailingZeros(stripeCount);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(buckets, buckets * depth * width);
+        }
+    }
+
+    // Records one event for the key and returns the estimated count in the window, including it
+    int add(String key, long nowMillis) {
+        long hash = hash(key);
+        long epoch = nowMillis / bucketMillis;
+        Stripe stripe = stripeFor(hash);
+        synchronized (stripe) {
+            int bucket = (int) (epoch % buckets);
+            if (stripe.epochs[bucket] != epoch) {
+                int from = bucket * depth * width;
+                Arrays.fill(stripe.counts, from, from + depth * width, 0);
+                stripe.epochs[bucket] = epoch;
+            }
+            for (int row = 0; row < depth; row++) {
+                int index = (bucket * depth + row) * width + column(hash, row);
+                if (stripe.counts[index] < Integer.MAX_VALUE) {
+                    stripe.counts[index]++;
+                }
+            }
+            return estimateLocked(stripe, hash, epoch);
+        }
+    }
+
+    int estimate(String key, long nowMillis) {
+        long hash = hash(key);
+        Stripe stripe = stripeFor(hash);
+        synchronized (stripe) {
+            return estimateLocked(stripe, hash, nowMillis / bucketMillis);
+        }
+    }
+
+    // Time until the oldest bucket drops out of the window
+    Duration untilNextBucket(long nowMillis) {
+        return Duration.ofMillis(bucketMillis - nowMillis % bucketMillis);
+    }
+
+    private int estimateLocked(Stripe stripe, long hash, long epoch) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int column = column(hash, row);
+            long sum = 0;
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                long bucketEpoch = stripe.epochs[bucket];
+                if (bucketEpoch <= epoch && bucketEpoch > epoch - buckets) {
+                    sum += stripe.counts[(bucket * depth + row) * width + column];
+                }
+            }
+            min = Math.min(min, sum);
+        }
+        return (int) Math.min(min, Integer.MAX_VALUE);
+    }
+
+    // The mask keeps a single stripe at index 0: a long shift by 64 is a shift by 0 in Java
+    private Stripe stripeFor(long hash) {
+        return stripes[(int) ((hash * 0x9E3779B97F4A7C15L) >>> stripeShift) & (stripes.length - 1)];
+    }
+
+    // Double hashing: row i uses h1 + i * h2
+    private int column(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return (h1 + row * h2) & (width - 1);
+    }
+
+    private long hash(String key) {
+        long h = seed;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        // murmur3 fmix64
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Stripe {
+        private final long[] epochs;
+        private final int[] counts;
+
+        private Stripe(int buckets, int size) {
+            this.epochs = new long[buckets];
+            Arrays.fill(epochs, Long.MIN_VALUE);
+            this.counts = new int[size];
+        }
+    }
+}
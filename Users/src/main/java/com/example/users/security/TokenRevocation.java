@@ -0,0 +1,94 @@
+package com.example.users.security;
+
+import com.example.users.Repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Revocation of issued JWTs through a per-user token version. Every token carries the
+ * {@code ver} its user had when it was issued; bumping the version (password change, role
+ * change, deletion) invalidates every token issued before. Versions are checked against an
+ * in-memory {@link TokenVersionTable}, so a request costs one hash lookup: the database is
+ * only read when a user is first seen, after {@code refresh-after}, or when a token is newer
+ * than the table (bumped on another instance).
+ */
+@Component
+public class TokenRevocation {
+
+    // Version of a deleted user: no token matches it
+    private static final int DELETED = Integer.MAX_VALUE;
+
+    private final UserRepository userRepository;
+    private final TokenVersionTable table;
+    private final int refreshAfterSeconds;
+    private final long startNanos = System.nanoTime();
+
+    private final Counter rejected;
+    private final Counter loads;
+
+    public TokenRevocation(UserRepository userRepository,
+                           MeterRegistry meterRegistry,
+                           @Value("${jwt.revocation.maximum-size:100000}") int maximumSize,
+                           @Value("${jwt.revocation.stripes:16}") int stripes,
+                           @Value("${jwt.revocation.refresh-after:PT1M}") Duration refreshAfter) {
+        this.userRepository = userRepository;
+        this.table = new TokenVersionTable(stripes, maximumSize);
+        this.refreshAfterSeconds = (int) Math.max(1, refreshAfter.toSeconds());
+
+        this.rejected = Counter.builder("jwt.revocation.rejected")
+                .description("Requests whose token was issued before the user's last token version bump")
+                .register(meterRegistry);
+        this.loads = Counter.builder("jwt.revocation.loads")
+                .description("Token versions read from the database")
+                .register(meterRegistry);
+        Gauge.builder("jwt.revocation.size", table, TokenVersionTable::size)
+                .description("Users currently held in the token version table")
+                .register(meterRegistry);
+    }
+
+    // True unless the token was issued before the user's current token version
+    public boolean isCurrent(AuthenticatedUser principal) {
+        Long userId = principal.userId();
+        if (userId == null || userId <= 0) {
+            return true;
+        }
+        int now = nowSecond();
+        int current = table.get(userId, now - refreshAfterSeconds);
+        if (current == TokenVersionTable.ABSENT || principal.tokenVersion() > current) {
+            current = load(userId, now);
+        }
+        if (principal.tokenVersion() != current) {
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    // Invalidates every token issued to the user so far; call after the change is committed
+    public int revokeTokens(Long userId) {
+        userRepository.incrementTokenVersion(userId);
+        return load(userId, nowSecond());
+    }
+
+    public void userDeleted(Long userId) {
+        table.raise(userId, DELETED, nowSecond());
+    }
+
+    private int load(long userId, int now) {
+        loads.increment();
+        int version = userRepository.findTokenVersionById(userId).orElse(DELETED);
+        table.raise(userId, version, now);
+        // A concurrent bump may have raised it further
+        int current = table.get(userId, Integer.MIN_VALUE);
+        return current == TokenVersionTable.ABSENT ? version : current;
+    }
+
+    private int nowSecond() {
+        return (int) ((System.nanoTime() - startNanos) / 1_000_000_000L);
+    }
+}
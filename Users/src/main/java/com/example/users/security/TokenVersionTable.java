@@ -0,0 +1,134 @@
+package com.example.users.security;
+
+import java.util.Arrays;
+
+/**
+ * Compact map of user id to current token version, backed by primitive arrays with linear
+ * probing (16 bytes a slot, no boxing). Keys are spread over independently locked stripes.
+ * Each stripe holds at most {@code maximumSize / stripes} users; when a stripe is full it is
+ * cleared and its users are loaded again on their next request. Entries also carry the second
+ * they were loaded at so callers can refresh them after a while.
+ */
+final class TokenVersionTable {
+
+    // Returned by get for a user that is not in the table
+    static final int ABSENT = Integer.MIN_VALUE;
+
+    private static final long EMPTY = 0L;
+
+    private final int stripeShift;
+    private final Stripe[] stripes;
+
+    TokenVersionTable(int stripeCount, int maximumSize) {
+        if (Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("Stripe count must be a power of two");
+        }
+        int perStripe = Math.max(1, maximumSize / stripeCount);
+        // Load factor 0.75 keeps probe sequences short; a full stripe must still have an empty slot to end a probe
+        int slots = Integer.highestOneBit(Math.max(perStripe + 1, perStripe * 4 / 3) - 1) << 1;
+        this.stripeShift = 64 - Integer.numberOfTrailingZeros(stripeCount);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(slots, perStripe);
+        }
+    }
+
+    /**
+     * Version of the user if it was loaded at or after {@code notBeforeSecond}, else {@link #ABSENT}.
+     * User ids must be positive, 0 marks an empty slot.
+     */
+    int get(long userId, int notBeforeSecond) {
+        long hash = mix(userId);
+        Stripe stripe = stripeFor(hash);
+        synchronized (stripe) {
+            int slot = stripe.find(userId, hash);
+            if (slot < 0 || stripe.loadedAt[slot] < notBeforeSecond) {
+                return ABSENT;
+            }
+            return stripe.versions[slot];
+        }
+    }
+
+    /**
+     * Records a version read from the database or written by a bump. Versions only go up, so a
+     * lower one (a load that raced with a bump) never overwrites a higher one.
+     */
+    void raise(long userId, int version, int nowSecond) {
+        long hash = mix(userId);
+        Stripe stripe = stripeFor(hash);
+        synchronized (stripe) {
+            int slot = stripe.find(userId, hash);
+            if (slot >= 0) {
+                stripe.versions[slot] = Math.max(stripe.versions[slot], version);
+                stripe.loadedAt[slot] = nowSecond;
+                return;
+            }
+            if (stripe.size >= stripe.capacity) {
+                stripe.clear();
+            }
+            slot = ~stripe.find(userId, hash);
+            stripe.keys[slot] = userId;
+            stripe.versions[slot] = version;
+            stripe.loadedAt[slot] = nowSecond;
+            stripe.size++;
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    // Stripes take the top bits, slots the bottom ones. With one stripe the shift is 64, which Java
+    // reduces to 0, so the mask is what keeps the index at 0
+    private Stripe stripeFor(long hash) {
+        return stripes[(int) (hash >>> stripeShift) & (stripes.length - 1)];
+    }
+
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    private static final class Stripe {
+        final long[] keys;
+        final int[] versions;
+        final int[] loadedAt;
+        final int mask;
+        final int capacity;
+        int size;
+
+        Stripe(int slots, int capacity) {
+            this.keys = new long[slots];
+            this.versions = new int[slots];
+            this.loadedAt = new int[slots];
+            this.mask = slots - 1;
+            this.capacity = capacity;
+        }
+
+        // Slot of the key, or ~slot of the empty slot where it would go
+        int find(long key, long hash) {
+            int slot = (int) hash & mask;
+            while (true) {
+                long current = keys[slot];
+                if (current == key) {
+                    return slot;
+                }
+                if (current == EMPTY) {
+                    return ~slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        void clear() {
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.users.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Bounded cache of bearer tokens whose signature has already been verified.
+ * Entries are keyed by a SHA-256 digest of the token (the raw token is never kept)
+ * and expire no later than the token's own {@code exp} claim.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private final Cache<String, AuthenticatedUser> cache;
+
+    public VerifiedTokenCache(@Value("${jwt.cache.maximum-size:10000}") long maximumSize,
+                              @Value("${jwt.cache.max-ttl:PT15M}") Duration maxTtl,
+                              MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new TokenExpiry(maxTtl.toNanos()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt.verified-tokens");
+    }
+
+    // Returns the cached principal, or null if the token has not been verified yet (or has expired)
+    public AuthenticatedUser get(String token) {
+        return cache.getIfPresent(digest(token));
+    }
+
+    public void put(String token, AuthenticatedUser principal) {
+        // Tokens without an expiry are never cached, they must be verified every time
+        if (principal.expiresAt() != null && !principal.isExpired()) {
+            cache.put(digest(token), principal);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(sha256.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Expire each entry at the token's exp, capped by the configured maximum TTL
+    private record TokenExpiry(long maxTtlNanos) implements Expiry<String, AuthenticatedUser> {
+
+        @Override
+        public long expireAfterCreate(String key, AuthenticatedUser principal, long currentTime) {
+            long remainingMillis = principal.expiresAt().toEpochMilli() - System.currentTimeMillis();
+            return Math.max(0, Math.min(maxTtlNanos, Duration.ofMillis(remainingMillis).toNanos()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, AuthenticatedUser principal, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, principal, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, AuthenticatedUser principal, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
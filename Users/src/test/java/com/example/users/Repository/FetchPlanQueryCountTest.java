@@ -0,0 +1,107 @@
+package com.example.users.Repository;
+
+import com.example.users.Config.QueryCountExceededException;
+import com.example.users.Config.QueryCountGuard;
+import com.example.users.Entity.PasswordResetToken;
+import com.example.users.Entity.User;
+import com.example.users.Enum.Role;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+
+import java.util.Set;
+
+import static com.example.users.TestUsers.user;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Every fetch plan must load what its use case reads in one statement; the guard fails anything more
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "query-guard.mode=FAIL",
+        "query-guard.max-statements=1"
+})
+@Import({QueryCountGuard.class, FetchPlanQueryCountTest.MetricsConfig.class})
+class FetchPlanQueryCountTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordResetTokenRepository tokenRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private QueryCountGuard queryCountGuard;
+
+    private User admin;
+    private String resetToken;
+
+    @BeforeEach
+    void setUp() {
+        admin = entityManager.persist(user("admin@example.com", "ID-1", Set.of(Role.ADMIN, Role.CLIENT)));
+        entityManager.persist(user("client@example.com", "ID-2"));
+        entityManager.persist(user("other@example.com", "ID-3"));
+        resetToken = entityManager.persist(PasswordResetToken.builder().user(admin).build()).getToken();
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void graphsLoadRolesWithTheUser() {
+        assertEquals(1, statements(() -> assertEquals(Set.of(Role.ADMIN, Role.CLIENT),
+                userRepository.findProfileById(admin.getId()).orElseThrow().getRoles())));
+        assertEquals(1, statements(() -> assertEquals(Set.of(Role.ADMIN, Role.CLIENT),
+                userRepository.findAdminViewById(admin.getId()).orElseThrow().getRoles())));
+        assertEquals(1, statements(() -> assertEquals(Set.of(Role.ADMIN, Role.CLIENT),
+                userRepository.findByNumberOfIdentity("ID-1").orElseThrow().getRoles())));
+    }
+
+    @Test
+    void plainLookupsLoadTheUserRowOnly() {
+        assertEquals(1, statements(() -> userRepository.findById(admin.getId()).orElseThrow()));
+        assertEquals(1, statements(() -> userRepository.findByEmail("client@example.com").orElseThrow()));
+    }
+
+    @Test
+    void resetTokenComesWithItsUser() {
+        assertEquals(1, statements(() -> assertEquals("admin@example.com",
+                tokenRepository.findByToken(resetToken).orElseThrow().getUser().getEmail())));
+    }
+
+    @Test
+    void nPlusOneFailsTheGuard() {
+        assertThrows(QueryCountExceededException.class, () -> statements(() ->
+                userRepository.findAll().forEach(user -> user.getRoles().size())));
+    }
+
+    // Runs the work in its own guard scope with an empty persistence context, like a request would
+    private int statements(Runnable work) {
+        entityManager.clear();
+        queryCountGuard.open();
+        int statements;
+        try {
+            work.run();
+        } finally {
+            statements = queryCountGuard.close("test");
+        }
+        return statements;
+    }
+
+    @TestConfiguration
+    static class MetricsConfig {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.users.Repository;
+
+import com.example.users.Entity.PasswordResetToken;
+import com.example.users.Entity.User;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static com.example.users.TestUsers.user;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class PasswordResetTokenRepositoryTest {
+
+    @Autowired
+    private PasswordResetTokenRepository tokenRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void tokenIsFoundByTheHashOfThePresentedValue() {
+        PasswordResetToken saved = newToken("reset@example.com", "ID-1");
+        String rawToken = saved.getToken();
+        entityManager.flush();
+        entityManager.clear();
+
+        PasswordResetToken found = tokenRepository.findByToken(rawToken).orElseThrow();
+        assertEquals(saved.getId(), found.getId());
+        assertArrayEquals(PasswordResetToken.hash(rawToken), found.getTokenHash());
+        assertFalse(new String(found.getTokenHash(), StandardCharsets.ISO_8859_1).contains(rawToken));
+        // Loaded with the user, which redeeming the token needs
+        assertTrue(Hibernate.isInitialized(found.getUser()));
+        assertEquals("reset@example.com", found.getUser().getEmail());
+
+        assertTrue(tokenRepository.findByToken(rawToken + "x").isEmpty());
+        assertTrue(tokenRepository.findByToken(null).isEmpty());
+    }
+
+    @Test
+    void usedTokenExpiresAndIsPurgedWithTheExpiredOnes() {
+        PasswordResetToken used = newToken("used@example.com", "ID-1");
+        newToken("valid@example.com", "ID-2");
+        entityManager.flush();
+
+        used.markUsed();
+        assertTrue(used.isUsed());
+        assertFalse(used.getExpiryDateTime().isAfter(LocalDateTime.now()));
+        entityManager.flush();
+
+        // What the next purge run sees; the unused token is good for another 24 hours
+        assertEquals(1, tokenRepository.deleteExpiredBatch(LocalDateTime.now().plusMinutes(1), 10));
+        entityManager.clear();
+        assertEquals(1, tokenRepository.count());
+        assertTrue(tokenRepository.findById(used.getId()).isEmpty());
+    }
+
+    @Test
+    void expiredTokensAreDeletedInBoundedBatches() {
+        for (int i = 0; i < 3; i++) {
+            newToken("expired" + i + "@example.com", "ID-" + i).setExpiryDateTime(LocalDateTime.now().minusHours(1));
+        }
+        newToken("valid@example.com", "ID-3");
+        entityManager.flush();
+
+        LocalDateTime cutoff = LocalDateTime.now();
+        assertEquals(2, tokenRepository.deleteExpiredBatch(cutoff, 2));
+        assertEquals(1, tokenRepository.deleteExpiredBatch(cutoff, 2));
+        assertEquals(0, tokenRepository.deleteExpiredBatch(cutoff, 2));
+        assertEquals(1, tokenRepository.count());
+    }
+
+    private PasswordResetToken newToken(String email, String numberOfIdentity) {
+        User user = entityManager.persist(user(email, numberOfIdentity));
+        return entityManager.persist(PasswordResetToken.builder().user(user).build());
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.users.Repository;
+
+import com.example.users.Config.SecondLevelCacheConfig;
+import com.example.users.Config.SecondLevelCacheMetrics;
+import com.example.users.Config.SecondLevelCacheProperties;
+import com.example.users.Entity.MfaInfo;
+import com.example.users.Entity.User;
+import com.example.users.Enum.Role;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.example.users.TestUsers.user;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Runs without a test transaction: the cache is only filled and invalidated by committed transactions
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({SecondLevelCacheConfig.class, SecondLevelCacheProperties.class, SecondLevelCacheMetrics.class,
+        SecondLevelCacheTest.MetricsConfig.class})
+class SecondLevelCacheTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MfaInfoRepository mfaInfoRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Statistics statistics;
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        userId = userRepository.save(user("user@example.com", "ID-1")).getId();
+        mfaInfoRepository.save(MfaInfo.builder()
+                .user(userRepository.getReferenceById(userId))
+                .secret("SECRET")
+                .enabled(true)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        mfaInfoRepository.deleteByUserId(userId);
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void warmReadsIssueNoStatements() {
+        userRepository.findProfileById(userId).orElseThrow();
+        userRepository.findByEmail("user@example.com").orElseThrow();
+        mfaInfoRepository.existsByUser_IdAndEnabledTrue(userId);
+        mfaInfoRepository.findSecretByUserId(userId);
+
+        assertEquals(0, statements(() -> {
+            assertEquals(Set.of(Role.CLIENT), userRepository.findProfileById(userId).orElseThrow().getRoles());
+            assertEquals(Set.of(Role.CLIENT), userRepository.findAdminViewById(userId).orElseThrow().getRoles());
+            assertEquals(userId, userRepository.findByEmail("user@example.com").orElseThrow().getId());
+            assertTrue(mfaInfoRepository.existsByUser_IdAndEnabledTrue(userId));
+            assertEquals("SECRET", mfaInfoRepository.findSecretByUserId(userId).orElseThrow());
+        }));
+        assertEquals(1.0, meterRegistry.get("hibernate.cache.hit.ratio").tag("region", "user-roles").gauge().value());
+    }
+
+    @Test
+    void entityUpdatesReplaceCachedState() {
+        userRepository.findProfileById(userId).orElseThrow();
+        userRepository.findByEmail("user@example.com").orElseThrow();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            User user = userRepository.findById(userId).orElseThrow();
+            user.setEmail("renamed@example.com");
+            user.setRoles(new HashSet<>(Set.of(Role.ADMIN)));
+        });
+
+        assertFalse(userRepository.findByEmail("user@example.com").isPresent());
+        assertEquals(userId, userRepository.findByEmail("renamed@example.com").orElseThrow().getId());
+        assertEquals(Set.of(Role.ADMIN), userRepository.findProfileById(userId).orElseThrow().getRoles());
+    }
+
+    @Test
+    void bulkUpdatesInvalidateCachedResults() {
+        assertTrue(mfaInfoRepository.existsByUser_IdAndEnabledTrue(userId));
+        userRepository.findProfileById(userId).orElseThrow();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                mfaInfoRepository.updateEnabledByUserId(userId, false));
+        userRepository.incrementTokenVersion(userId);
+
+        assertFalse(mfaInfoRepository.existsByUser_IdAndEnabledTrue(userId));
+        assertEquals(1, userRepository.findProfileById(userId).orElseThrow().getTokenVersion());
+    }
+
+    @Test
+    void singleUserUpdatesKeepOtherUsersCached() {
+        Long otherId = userRepository.save(user("other@example.com", "ID-2")).getId();
+        userRepository.findProfileById(userId).orElseThrow();
+        userRepository.findProfileById(otherId).orElseThrow();
+        userRepository.findByEmail("other@example.com").orElseThrow();
+
+        assertEquals(0, userRepository.replacePasswordHash(userId, "stale", "rehashed"));
+        assertEquals(1, userRepository.replacePasswordHash(userId, "hash", "rehashed"));
+        assertEquals(1, userRepository.incrementTokenVersion(userId));
+
+        assertEquals(0, statements(() -> {
+            assertEquals(otherId, userRepository.findByEmail("other@example.com").orElseThrow().getId());
+            assertEquals(Set.of(Role.CLIENT), userRepository.findProfileById(otherId).orElseThrow().getRoles());
+        }));
+        User updated = userRepository.findProfileById(userId).orElseThrow();
+        assertEquals("rehashed", updated.getPassword());
+        assertEquals(1, updated.getTokenVersion());
+    }
+
+    private int statements(Runnable work) {
+        statistics.clear();
+        work.run();
+        return (int) statistics.getPrepareStatementCount();
+    }
+
+    @TestConfiguration
+    static class MetricsConfig {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.users.Repository;
+
+import com.example.users.Entity.MfaInfo;
+import com.example.users.Entity.User;
+import com.example.users.Enum.Role;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.example.users.TestUsers.user;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class UserRepositoryTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void credentialsAreLoadedInOneStatement() {
+        User user = entityManager.persist(user("mfa@example.com", "ID-1", Set.of(Role.ADMIN, Role.CLIENT)));
+        entityManager.persist(MfaInfo.builder().user(user).secret("SECRET").enabled(true).build());
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        Optional<UserCredentials> credentials = userRepository.findCredentialsByEmail("mfa@example.com");
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertTrue(credentials.isPresent());
+        assertEquals(user.getId(), credentials.get().id());
+        assertEquals("hash", credentials.get().password());
+        assertEquals(Set.of(Role.ADMIN, Role.CLIENT), credentials.get().roles());
+        assertTrue(credentials.get().mfaEnabled());
+        assertEquals("SECRET", credentials.get().mfaSecret());
+    }
+
+    @Test
+    void credentialsWithoutRolesOrMfa() {
+        entityManager.persist(user("plain@example.com", "ID-2", new HashSet<>()));
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        UserCredentials credentials = userRepository.findCredentialsByEmail("plain@example.com").orElseThrow();
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertTrue(credentials.roles().isEmpty());
+        assertFalse(credentials.mfaEnabled());
+        assertNull(credentials.mfaSecret());
+        assertTrue(userRepository.findCredentialsByEmail("missing@example.com").isEmpty());
+    }
+}
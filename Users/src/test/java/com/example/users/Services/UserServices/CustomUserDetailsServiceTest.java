@@ -0,0 +1,204 @@
+package com.example.users.Services.UserServices;
+
+import com.example.users.Enum.Role;
+import com.example.users.Repository.UserCredentials;
+import com.example.users.Repository.UserRepository;
+import com.example.users.security.PasswordHashingService;
+import com.example.users.security.SecurityConfig;
+import com.example.users.security.TokenRevocation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static com.example.users.TestUsers.user;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Runs without a test transaction: UserService evicts after its own commits, as in production
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({UserService.class, CustomUserDetailsService.class, UserUniquenessFilter.class, TokenRevocation.class,
+        PasswordHashingService.class, CustomUserDetailsServiceTest.SecurityBeans.class})
+class CustomUserDetailsServiceTest {
+
+    @Autowired
+    private CustomUserDetailsService customUserDetailsService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long userId;
+
+    @TestConfiguration
+    static class SecurityBeans {
+
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new SecurityConfig().passwordEncoder(4, Duration.ofMillis(250), 4, 4);
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        userId = userRepository.save(user("user@example.com", "ID-1")).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+        customUserDetailsService.evict("user@example.com", "ID-1");
+        customUserDetailsService.evict("renamed@example.com", "ID-2");
+    }
+
+    @Test
+    void repeatedLoadsAreServedFromTheCache() {
+        customUserDetailsService.loadUserByUsername("user@example.com");
+        customUserDetailsService.loadUserByIdentityNumber("ID-1");
+
+        assertEquals(0, statements(() -> {
+            assertEquals("hash", customUserDetailsService.loadUserByUsername("user@example.com").getPassword());
+            assertEquals("user@example.com", customUserDetailsService.loadUserByIdentityNumber("ID-1").getUsername());
+        }));
+    }
+
+    @Test
+    void updateEvictsTheOldAndNewKeys() {
+        customUserDetailsService.loadUserByUsername("user@example.com");
+        customUserDetailsService.loadUserByIdentityNumber("ID-1");
+
+        userService.updateUser(userId, user("renamed@example.com", "ID-2", Set.of(Role.CLIENT)));
+
+        assertThrows(UsernameNotFoundException.class, () -> customUserDetailsService.loadUserByUsername("user@example.com"));
+        assertThrows(UsernameNotFoundException.class, () -> customUserDetailsService.loadUserByIdentityNumber("ID-1"));
+        assertEquals("renamed@example.com", customUserDetailsService.loadUserByIdentityNumber("ID-2").getUsername());
+    }
+
+    @Test
+    void roleChangeEvictsTheUser() {
+        customUserDetailsService.loadUserByUsername("user@example.com");
+
+        userService.updateUserRole(userId, "ADMIN");
+
+        assertEquals("ADMIN", customUserDetailsService.loadUserByUsername("user@example.com")
+                .getAuthorities().iterator().next().getAuthority());
+    }
+
+    @Test
+    void deleteEvictsTheUser() {
+        customUserDetailsService.loadUserByUsername("user@example.com");
+        customUserDetailsService.loadUserByIdentityNumber("ID-1");
+
+        userService.deleteUser(userId);
+
+        assertThrows(UsernameNotFoundException.class, () -> customUserDetailsService.loadUserByUsername("user@example.com"));
+        assertThrows(UsernameNotFoundException.class, () -> customUserDetailsService.loadUserByIdentityNumber("ID-1"));
+    }
+
+    @Test
+    void passwordRehashEvictsTheUser() throws InterruptedException {
+        customUserDetailsService.loadUserByUsername("user@example.com");
+        UserCredentials credentials = userRepository.findCredentialsByEmail("user@example.com").orElseThrow();
+
+        // "hash" has no {bcrypt} prefix, so it is upgraded in the background
+        userService.upgradePasswordHashIfNeeded(credentials, "secret");
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        String password = "hash";
+        while ("hash".equals(password) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            password = customUserDetailsService.loadUserByUsername("user@example.com").getPassword();
+        }
+        assertTrue(password.startsWith("{bcrypt}"), password);
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        UserRepository slowRepository = (UserRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{UserRepository.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("findCredentialsByEmail")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    loads.incrementAndGet();
+                    release.await(5, TimeUnit.SECONDS);
+                    return Optional.of(new UserCredentials(1L, (String) args[0], "ID-1", "hash", 0,
+                            Set.of(Role.CLIENT), false, null));
+                });
+        CustomUserDetailsService service = new CustomUserDetailsService();
+        ReflectionTestUtils.setField(service, "userRepository", slowRepository);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "cacheTtl", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(service, "cacheMaximumSize", 100L);
+        service.initCaches();
+
+        ExecutorService logins = Executors.newFixedThreadPool(8);
+        try {
+            List<CompletableFuture<UserDetails>> results = IntStream.range(0, 8)
+                    .mapToObj(i -> CompletableFuture.supplyAsync(() -> service.loadUserByUsername("user@example.com"), logins))
+                    .toList();
+            // Let every caller reach the cache while the first load is still running
+            Thread.sleep(200);
+            release.countDown();
+
+            for (CompletableFuture<UserDetails> result : results) {
+                assertEquals("user@example.com", result.get(5, TimeUnit.SECONDS).getUsername());
+            }
+        } finally {
+            logins.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    private int statements(Runnable work) {
+        statistics.clear();
+        work.run();
+        return (int) statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.users.Services.UserServices;
+
+import com.example.users.Config.ThymeleafConfig;
+import com.example.users.Entity.EmailOutbox;
+import com.example.users.Enum.EmailOutboxStatus;
+import com.example.users.Repository.EmailOutboxRepository;
+import com.example.users.Repository.PasswordResetTokenRepository;
+import com.example.users.Repository.UserRepository;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static com.example.users.TestUsers.user;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Outbox round trip against an embedded SMTP server; runs without a test transaction like the real dispatcher
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "email.outbox.batch-size=2",
+        "email.outbox.max-attempts=2",
+        "email.outbox.purge.batch-size=2"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({PasswordResetService.class, EmailOutboxDispatcher.class, EmailOutboxPurger.class, EmailService.class,
+        EmailTemplateService.class, ThymeleafConfig.class, EmailOutboxDispatcherTest.MailConfig.class})
+class EmailOutboxDispatcherTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    @Autowired
+    private PasswordResetService passwordResetService;
+
+    @Autowired
+    private EmailOutboxDispatcher dispatcher;
+
+    @Autowired
+    private EmailOutboxPurger purger;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private PasswordResetTokenRepository tokenRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @TestConfiguration
+    static class MailConfig {
+
+        @Bean
+        JavaMailSender javaMailSender() {
+            JavaMailSenderImpl sender = new JavaMailSenderImpl();
+            sender.setHost("localhost");
+            sender.setPort(ServerSetupTest.SMTP.getPort());
+            return sender;
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 3; i++) {
+            userRepository.save(user("user" + i + "@example.com", "ID-" + i));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        emailOutboxRepository.deleteAll();
+        tokenRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void resetRequestIsQueuedWithItsTokenAndSentInBatches() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            passwordResetService.requestReset("user" + i + "@example.com");
+        }
+        passwordResetService.requestReset("unknown@example.com");
+
+        assertEquals(3, tokenRepository.count());
+        assertEquals(3, emailOutboxRepository.count());
+        assertEquals(0, greenMail.getReceivedMessages().length);
+
+        // Batch size 2: one run drains both batches
+        dispatcher.dispatch();
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertEquals(3, received.length);
+        assertEquals("Password Reset Request", received[0].getSubject());
+        assertTrue(emailOutboxRepository.findAll().stream()
+                .allMatch(email -> email.getStatus() == EmailOutboxStatus.SENT && email.getSentAt() != null));
+        // The reset links only went out by mail
+        assertTrue(emailOutboxRepository.findAll().stream().allMatch(email -> email.getHtmlBody().isEmpty()));
+    }
+
+    @Test
+    void failedSendsBackOffThenDeadLetter() {
+        passwordResetService.requestReset("user0@example.com");
+        greenMail.stop();
+
+        dispatcher.dispatch();
+        EmailOutbox email = emailOutboxRepository.findAll().get(0);
+        assertEquals(EmailOutboxStatus.PENDING, email.getStatus());
+        assertEquals(1, email.getAttempts());
+        assertTrue(email.getNextAttemptAt().isAfter(LocalDateTime.now()));
+
+        // Not due yet: nothing happens
+        dispatcher.dispatch();
+        assertEquals(1, emailOutboxRepository.findAll().get(0).getAttempts());
+
+        email.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        emailOutboxRepository.save(email);
+        dispatcher.dispatch();
+
+        List<EmailOutbox> emails = emailOutboxRepository.findAll();
+        assertEquals(EmailOutboxStatus.DEAD, emails.get(0).getStatus());
+        assertEquals(2, emails.get(0).getAttempts());
+        assertTrue(emails.get(0).getHtmlBody().isEmpty());
+    }
+
+    @Test
+    void finishedRowsArePurgedAfterTheRetention() {
+        for (int i = 0; i < 3; i++) {
+            passwordResetService.requestReset("user" + i + "@example.com");
+        }
+        dispatcher.dispatch();
+        passwordResetService.requestReset("user0@example.com");
+
+        // Within the retention nothing goes
+        assertEquals(0, purger.purge());
+
+        List<EmailOutbox> emails = emailOutboxRepository.findAll();
+        emails.forEach(email -> email.setNextAttemptAt(LocalDateTime.now().minusDays(8)));
+        emailOutboxRepository.saveAll(emails);
+
+        // Purge batch size 2: the three sent rows take two batches, the pending one stays
+        assertEquals(3, purger.purge());
+        List<EmailOutbox> left = emailOutboxRepository.findAll();
+        assertEquals(1, left.size());
+        assertEquals(EmailOutboxStatus.PENDING, left.get(0).getStatus());
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.users.Services.UserServices;
+
+import com.example.users.Config.MfaConfig;
+import com.example.users.Entity.User;
+import com.example.users.Repository.UserCredentials;
+import com.example.users.Repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import static com.example.users.TestUsers.user;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Guards the number of statements behind each MFA decision
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({MfaService.class, MfaConfig.class})
+class MfaServiceTest {
+
+    @Autowired
+    private MfaService mfaService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        User user = entityManager.persist(user("mfa@example.com", "ID-1"));
+        userId = user.getId();
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void eachMfaDecisionIsOneStatement() {
+        statistics.clear();
+        assertNull(mfaService.getSecretIfExists(userId));
+        assertFalse(mfaService.isMfaEnabled(userId));
+        assertEquals(2, statistics.getPrepareStatementCount());
+
+        // Setup inserts without loading the user first
+        statistics.clear();
+        mfaService.createOrUpdateMfaInfo(userId, "SECRET", false);
+        entityManager.flush();
+        assertEquals(2, statistics.getPrepareStatementCount());
+        entityManager.clear();
+
+        statistics.clear();
+        assertEquals("SECRET", mfaService.getSecretIfExists(userId));
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        mfaService.enableMfa(userId);
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        assertTrue(mfaService.isMfaEnabled(userId));
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        mfaService.disableMfa(userId);
+        assertFalse(mfaService.isMfaEnabled(userId));
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void pendingSecretIsGoneOnceMfaIsEnabled() {
+        assertNull(mfaService.getPendingSecret(userId));
+
+        mfaService.createOrUpdateMfaInfo(userId, "SECRET", false);
+        entityManager.flush();
+        entityManager.clear();
+        assertEquals("SECRET", mfaService.getPendingSecret(userId));
+
+        mfaService.enableMfa(userId);
+        assertNull(mfaService.getPendingSecret(userId));
+        assertEquals("SECRET", mfaService.getSecretIfExists(userId));
+    }
+
+    @Test
+    void loginReadsMfaStateWithTheCredentials() {
+        mfaService.createOrUpdateMfaInfo(userId, "SECRET", true);
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics.clear();
+        UserCredentials credentials = userRepository.findCredentialsByEmail("mfa@example.com").orElseThrow();
+        assertTrue(credentials.mfaEnabled());
+        assertEquals("SECRET", credentials.mfaSecret());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+}
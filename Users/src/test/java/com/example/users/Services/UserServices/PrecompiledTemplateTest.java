@@ -0,0 +1,95 @@
+package com.example.users.Services.UserServices;
+
+import com.example.users.Config.ThymeleafConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.StringTemplateResolver;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PrecompiledTemplateTest {
+
+    private static final String[] VARIABLES = {"firstName", "resetLink", "expiryTime", "year"};
+
+    private AnnotationConfigApplicationContext context;
+    private TemplateEngine engine;
+    private PrecompiledTemplate template;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(ThymeleafConfig.class);
+        engine = context.getBean(TemplateEngine.class);
+        template = PrecompiledTemplate.compile(engine, "password-reset", VARIABLES);
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void rendersTheSameBytesAsThymeleaf() throws Exception {
+        List<String[]> cases = List.of(
+                new String[]{"Youssef", "http://localhost:4200/client/reset-password?token=3f2a9c1e", "2025-05-01 14:30:00", "2025"},
+                // Every character Thymeleaf escapes, in text and in attributes
+                new String[]{"<b>Tom & \"Jerry\" O'Brien</b>", "http://x/?a=1&b=<2>&c=\"3\"&d='4'", "&&", "<>"},
+                // Multi-byte UTF-8 around escaped characters
+                new String[]{"Zoë 李 😀 &", "http://x/ü?é=1&ß", "€", "٢٠٢٥"},
+                new String[]{"", "", "", ""});
+
+        for (String[] values : cases) {
+            byte[] expected = thymeleaf(values).getBytes(StandardCharsets.UTF_8);
+
+            assertArrayEquals(expected, template.renderUtf8(values), values[0]);
+            assertArrayEquals(expected, template.render(values).getBytes(StandardCharsets.UTF_8), values[0]);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            template.writeTo(out, values);
+            assertArrayEquals(expected, out.toByteArray(), values[0]);
+        }
+    }
+
+    @Test
+    void nullRendersLikeThymeleaf() {
+        String[] values = {null, "http://x/", null, "2025"};
+
+        assertArrayEquals(thymeleaf(values).getBytes(StandardCharsets.UTF_8), template.renderUtf8(values));
+    }
+
+    @Test
+    void rejectsVariablesThatAreNotRenderedVerbatim() {
+        SpringTemplateEngine stringEngine = new SpringTemplateEngine();
+        StringTemplateResolver resolver = new StringTemplateResolver();
+        resolver.setTemplateMode(TemplateMode.HTML);
+        stringEngine.setTemplateResolver(resolver);
+
+        // The template is its own name with a StringTemplateResolver
+        assertThrows(IllegalStateException.class, () -> PrecompiledTemplate.compile(stringEngine,
+                "<p th:if=\"${name == 'admin'}\">Hi</p><p th:text=\"${other}\"></p>", "name", "other"));
+        assertThrows(IllegalStateException.class, () -> PrecompiledTemplate.compile(stringEngine,
+                "<p th:text=\"${#strings.length(name)}\"></p>", "name"));
+    }
+
+    @Test
+    void rejectsTheWrongNumberOfValues() {
+        assertThrows(IllegalArgumentException.class, () -> template.render("only", "three", "values"));
+    }
+
+    private String thymeleaf(String[] values) {
+        Context thymeleafContext = new Context();
+        for (int i = 0; i < VARIABLES.length; i++) {
+            thymeleafContext.setVariable(VARIABLES[i], values[i]);
+        }
+        return engine.process("password-reset", thymeleafContext);
+    }
+}
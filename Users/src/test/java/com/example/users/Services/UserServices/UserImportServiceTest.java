@@ -0,0 +1,190 @@
+package com.example.users.Services.UserServices;
+
+import com.example.users.Entity.User;
+import com.example.users.Enum.IdentityType;
+import com.example.users.Enum.Role;
+import com.example.users.Repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import static com.example.users.TestUsers.user;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Runs without a test transaction: every import chunk commits on its own, like in production
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "user-import.batch-size=3",
+        "user-import.hashing-threads=2"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({UserImportService.class, UserUniquenessFilter.class, JacksonAutoConfiguration.class,
+        UserImportServiceTest.ImportConfig.class})
+class UserImportServiceTest {
+
+    private static final String HEADER = "firstName,lastName,email,birthday,identityType,numberOfIdentity,phoneNumber,address,password,roles";
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserUniquenessFilter userUniquenessFilter;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @TestConfiguration
+    static class ImportConfig {
+
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder(4);
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        userUniquenessFilter.add(userRepository.save(user("existing@example.com", "ID-0")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void csvRowsAreImportedAndBadRowsReportedByLine() throws Exception {
+        String csv = String.join("\n",
+                HEADER,
+                "Ann,One,ann@example.com,1990-01-01,CIN,ID-1,1111,\"1 Main St, Tunis\",secret1,ADMIN;CLIENT",
+                "Bob,Two,existing@example.com,1990-01-01,CIN,ID-2,2222,,secret2,",
+                "Cid,Three,cid@example.com,1990-13-01,CIN,ID-3,3333,,secret3,",
+                "",
+                "Dee,Four,dee@example.com,1990-01-01,PASSPORT,ID-4,4444,,secret4,CLIENT",
+                "Eve,Five,ann@example.com,1990-01-01,CIN,ID-5,5555,,secret5,",
+                "Fay,Six,fay@example.com,1990-01-01,CIN,ID-6,6666",
+                "Gus,Seven,gus@example.com,1990-01-01,CIN,ID-7,7777,,\"pass \"\"word\"\"\",client");
+
+        UserImportService.ImportResult result = userImportService.importCsv(stream(csv));
+
+        assertEquals(3, result.imported());
+        assertEquals(4, result.failed());
+        assertEquals(List.of(
+                new UserImportService.RowError(4, "Invalid birthday, expected yyyy-MM-dd: 1990-13-01"),
+                new UserImportService.RowError(3, "Email already in use."),
+                new UserImportService.RowError(8, "Expected 10 columns, found 7."),
+                new UserImportService.RowError(7, "Email already in use.")), result.errors());
+
+        User ann = userRepository.findAdminViewById(userRepository.findByEmail("ann@example.com").orElseThrow().getId()).orElseThrow();
+        assertEquals("1 Main St, Tunis", ann.getAddress());
+        assertEquals(Set.of(Role.ADMIN, Role.CLIENT), ann.getRoles());
+        assertTrue(passwordEncoder.matches("secret1", ann.getPassword()));
+        assertTrue(passwordEncoder.matches("pass \"word\"", userRepository.findByEmail("gus@example.com").orElseThrow().getPassword()));
+        assertEquals(IdentityType.PASSPORT, userRepository.findByEmail("dee@example.com").orElseThrow().getIdentityType());
+    }
+
+    @Test
+    void ndjsonRowsAreImported() throws Exception {
+        String ndjson = String.join("\n",
+                "{\"firstName\":\"Ann\",\"lastName\":\"One\",\"email\":\"ann@example.com\",\"birthday\":\"1990-01-01\","
+                        + "\"identityType\":\"CIN\",\"numberOfIdentity\":\"ID-1\",\"phoneNumber\":\"1111\",\"password\":\"secret1\",\"roles\":[\"ADMIN\"]}",
+                "{\"firstName\":\"Bob\"",
+                "{\"firstName\":\"Cid\",\"lastName\":\"Three\",\"email\":\"cid@example.com\",\"birthday\":\"1990-01-01\","
+                        + "\"identityType\":\"CIN\",\"numberOfIdentity\":\"ID-0\",\"phoneNumber\":\"3333\",\"password\":\"secret3\"}",
+                "{\"firstName\":\"Dee\",\"lastName\":\"Four\",\"email\":\"dee@example.com\",\"birthday\":\"1990-01-01\","
+                        + "\"identityType\":\"CIN\",\"numberOfIdentity\":\"ID-4\",\"phoneNumber\":\"4444\",\"roles\":[\"ADMIN\"]}");
+
+        UserImportService.ImportResult result = userImportService.importNdjson(stream(ndjson));
+
+        assertEquals(1, result.imported());
+        assertEquals(3, result.failed());
+        assertEquals(2, result.errors().get(0).line());
+        assertTrue(result.errors().get(0).message().startsWith("Invalid JSON"));
+        assertEquals(new UserImportService.RowError(4, "Missing password."), result.errors().get(1));
+        assertEquals(new UserImportService.RowError(3, "Identity number already in use."), result.errors().get(2));
+        assertEquals(Set.of(Role.ADMIN), userRepository.findAdminViewById(
+                userRepository.findByEmail("ann@example.com").orElseThrow().getId()).orElseThrow().getRoles());
+    }
+
+    @Test
+    void chunkIsInsertedInBatches() throws Exception {
+        String csv = String.join("\n",
+                HEADER,
+                "Ann,One,ann@example.com,1990-01-01,CIN,ID-1,1111,,secret1,ADMIN;CLIENT",
+                "Bob,Two,bob@example.com,1990-01-01,CIN,ID-2,2222,,secret2,CLIENT",
+                "Cid,Three,cid@example.com,1990-01-01,CIN,ID-3,3333,,secret3,CLIENT");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        assertEquals(3, userImportService.importCsv(stream(csv)).imported());
+
+        // The Bloom filter has never seen these values, so no duplicate check query: one batch each
+        // for users and user_roles, with the ids handed out from one pooled block
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(3, statistics.getEntityInsertCount());
+    }
+
+    @Test
+    void failedChunkIsRetriedRowByRow() throws Exception {
+        // Registered behind the filter's back, like a registration racing the import
+        userRepository.save(user("racer@example.com", "ID-9"));
+        String csv = String.join("\n",
+                HEADER,
+                "Ann,One,ann@example.com,1990-01-01,CIN,ID-1,1111,,secret1,CLIENT",
+                "Bob,Two,racer@example.com,1990-01-01,CIN,ID-2,2222,,secret2,CLIENT",
+                "Cid,Three,cid@example.com,1990-01-01,CIN,ID-3,3333,,secret3,CLIENT");
+
+        UserImportService.ImportResult result = userImportService.importCsv(stream(csv));
+
+        assertEquals(2, result.imported());
+        assertEquals(List.of(new UserImportService.RowError(3, "Email or identity number already in use.")), result.errors());
+        assertTrue(userRepository.existsByEmail("ann@example.com"));
+        assertTrue(userRepository.existsByEmail("cid@example.com"));
+    }
+
+    @Test
+    void unknownCsvColumnIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> userImportService.importCsv(stream("firstName,nickname\nAnn,A")));
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.users.Services.UserServices;
+
+import com.example.users.Enum.UserField;
+import com.example.users.Repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.users.TestUsers.user;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The export reads on its own connection, so the rows are committed rather than kept in a test transaction
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "users.export.max-concurrent=1"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({UserListingService.class, UserListingServiceTest.JsonConfig.class})
+class UserListingServiceTest {
+
+    @Autowired
+    private UserListingService userListingService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @TestConfiguration
+    static class JsonConfig {
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper().registerModule(new JavaTimeModule());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void exportWritesOneLinePerUser() throws Exception {
+        userRepository.save(user("a@example.com", "ID-1"));
+        userRepository.save(user("b@example.com", "ID-2"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(userListingService.export(null, Set.of(UserField.EMAIL), out));
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("a@example.com"));
+        assertTrue(lines[1].contains("b@example.com"));
+    }
+
+    @Test
+    void exportIsTurnedAwayWhileTheSlotIsTakenAndAvailableAgainAfterwards() throws Exception {
+        userRepository.save(user("a@example.com", "ID-1"));
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // A client that stops reading: the first write blocks until released
+        OutputStream slowClient = new OutputStream() {
+            @Override
+            public void write(int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return userListingService.export(null, Set.of(UserField.EMAIL), slowClient);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+
+        ByteArrayOutputStream rejected = new ByteArrayOutputStream();
+        assertFalse(userListingService.export(null, Set.of(UserField.EMAIL), rejected));
+        assertEquals(0, rejected.size());
+
+        release.countDown();
+        assertTrue(first.get(10, TimeUnit.SECONDS));
+        assertTrue(userListingService.export(null, Set.of(UserField.EMAIL), new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void slotIsGivenBackWhenTheExportFails() throws Exception {
+        userRepository.save(user("a@example.com", "ID-1"));
+        OutputStream gone = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        try {
+            userListingService.export(null, Set.of(UserField.EMAIL), gone);
+        } catch (IOException expected) {
+            // The client went away
+        }
+        assertTrue(userListingService.export(null, Set.of(UserField.EMAIL), new ByteArrayOutputStream()));
+    }
+}
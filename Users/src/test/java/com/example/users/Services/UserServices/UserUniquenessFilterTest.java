@@ -0,0 +1,104 @@
+package com.example.users.Services.UserServices;
+
+import com.example.users.Controllers.UserController;
+import com.example.users.Repository.UserRepository;
+import com.example.users.security.PasswordHashingService;
+import com.example.users.security.TokenRevocation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+
+import static com.example.users.TestUsers.user;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Runs without a test transaction: the duplicate has to be committed for the unique constraint to see it
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({UserService.class, UserUniquenessFilter.class, CustomUserDetailsService.class, TokenRevocation.class,
+        PasswordHashingService.class, UserUniquenessFilterTest.SecurityBeans.class})
+class UserUniquenessFilterTest {
+
+    @Autowired
+    private UserUniquenessFilter userUniquenessFilter;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @TestConfiguration
+    static class SecurityBeans {
+
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder(4);
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void everyKnownValueMightExist() {
+        userRepository.save(user("loaded@example.com", "ID-1"));
+        UserUniquenessFilter filter = new UserUniquenessFilter(userRepository, 1000, 0.01);
+
+        // Until the startup load has finished nothing can be ruled out
+        assertTrue(filter.mightContainEmail("new@example.com"));
+
+        // Outside the bean, so the stream needs the transaction the proxy would open
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> filter.load());
+        filter.add(user("Added@Example.com", "id-2"));
+
+        assertTrue(filter.mightContainEmail("loaded@example.com"));
+        assertTrue(filter.mightContainIdentityNumber("ID-1"));
+        // Compared case-insensitively, like MySQL's default collation
+        assertTrue(filter.mightContainEmail("added@example.com"));
+        assertTrue(filter.mightContainIdentityNumber("ID-2"));
+        assertFalse(filter.mightContainEmail("new@example.com"));
+    }
+
+    @Test
+    void duplicateTheFilterMissedIsStillA400() {
+        userUniquenessFilter.load();
+        // Registered after the load and never added to this filter, e.g. by another instance
+        userRepository.save(user("taken@example.com", "ID-1"));
+        assertFalse(userUniquenessFilter.mightContainEmail("taken@example.com"));
+
+        UserController userController = new UserController(userService, null, null, null);
+        ResponseEntity<?> response = userController.createUser(user("taken@example.com", "ID-2"));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals(Map.of("message", "Email or identity number already in use."), response.getBody());
+        assertEquals(1, userRepository.count());
+    }
+}
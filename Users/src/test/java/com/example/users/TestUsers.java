@@ -0,0 +1,33 @@
+package com.example.users;
+
+import com.example.users.Entity.User;
+import com.example.users.Enum.IdentityType;
+import com.example.users.Enum.Role;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+// The user the repository and service tests persist; only what a test looks up by varies
+public final class TestUsers {
+
+    private TestUsers() {
+    }
+
+    public static User user(String email, String numberOfIdentity) {
+        return user(email, numberOfIdentity, Set.of(Role.CLIENT));
+    }
+
+    public static User user(String email, String numberOfIdentity, Set<Role> roles) {
+        return User.builder()
+                .firstName("First")
+                .lastName("Last")
+                .email(email)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .identityType(IdentityType.CIN)
+                .numberOfIdentity(numberOfIdentity)
+                .phoneNumber("0000")
+                .password("hash")
+                .roles(roles)
+                .build();
+    }
+}
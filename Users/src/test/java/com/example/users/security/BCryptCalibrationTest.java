@@ -0,0 +1,71 @@
+package com.example.users.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BCryptCalibrationTest {
+
+    private PasswordHashingService hashingService;
+
+    @AfterEach
+    void tearDown() {
+        if (hashingService != null) {
+            hashingService.shutdown();
+        }
+    }
+
+    @Test
+    void picksTheHighestStrengthWithinTheTargetLatency() {
+        // 10 ms at strength 10: 20 ms at 11, 40 ms at 12, 80 ms at 13
+        long tenMillis = Duration.ofMillis(10).toNanos();
+
+        assertEquals(12, BCryptCalibration.strengthFor(tenMillis, Duration.ofMillis(50), 10, 14));
+        assertEquals(10, BCryptCalibration.strengthFor(tenMillis, Duration.ofMillis(15), 10, 14));
+    }
+
+    @Test
+    void neverGoesAboveTheFleetMaximum() {
+        // A fast machine would pick 20, the shared maximum still wins
+        assertEquals(14, BCryptCalibration.strengthFor(Duration.ofMillis(1).toNanos(), Duration.ofSeconds(1), 10, 14));
+        assertEquals(10, BCryptCalibration.calibrate(Duration.ofHours(1), 4, 10));
+    }
+
+    @Test
+    void pinnedStrengthSkipsCalibration() {
+        assertEquals(12, BCryptCalibration.resolve(12, Duration.ofHours(1), 4, 14));
+        assertEquals(6, BCryptCalibration.resolve(0, Duration.ofHours(1), 4, 6));
+    }
+
+    @Test
+    void rejectsAnInvalidRange() {
+        assertThrows(IllegalArgumentException.class, () -> BCryptCalibration.calibrate(Duration.ofMillis(250), 12, 10));
+        assertThrows(IllegalArgumentException.class, () -> BCryptCalibration.calibrate(Duration.ofMillis(250), 10, 32));
+    }
+
+    @Test
+    void onlyWeakerOrLegacyHashesAreRehashed() {
+        PasswordEncoder encoder = new SecurityConfig().passwordEncoder(6, Duration.ofMillis(250), 4, 14);
+        hashingService = new PasswordHashingService(encoder, new SimpleMeterRegistry(), 1, 4,
+                Duration.ofSeconds(5), Duration.ofSeconds(1));
+
+        assertFalse(hashingService.needsRehash(encoder.encode("secret")));
+        assertTrue(hashingService.needsRehash("{bcrypt}" + new BCryptPasswordEncoder(5).encode("secret")));
+        // A hash from an instance with a higher strength is kept, never lowered
+        assertFalse(hashingService.needsRehash("{bcrypt}" + new BCryptPasswordEncoder(7).encode("secret")));
+        // Legacy hashes without the {bcrypt} prefix still match and get the prefix on the next login
+        String legacy = new BCryptPasswordEncoder(6).encode("secret");
+        assertTrue(encoder.matches("secret", legacy));
+        assertTrue(hashingService.needsRehash(legacy));
+        assertFalse(hashingService.needsRehash(null));
+    }
+}
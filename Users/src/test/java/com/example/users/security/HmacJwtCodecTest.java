@@ -0,0 +1,177 @@
+package com.example.users.security;
+
+import com.example.users.Enum.Role;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HmacJwtCodecTest {
+
+    private static final byte[] LEGACY_SECRET =
+            "legacy-hmac-secret-with-at-least-256-bits!".getBytes(StandardCharsets.UTF_8);
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final HmacJwtCodec codec = new HmacJwtCodec(LEGACY_SECRET);
+
+    @Test
+    void decodesAJjwtTokenLikeTheJjwtParser() {
+        String token = legacyToken().compact();
+
+        AuthenticatedUser decoded = codec.decode(token);
+
+        assertEquals(parseWithJjwt(token), decoded);
+        assertEquals(42L, decoded.userId());
+        assertEquals("user@example.com", decoded.email());
+        assertEquals(Set.of(Role.ADMIN, Role.CLIENT), decoded.roles());
+        assertEquals(3, decoded.tokenVersion());
+    }
+
+    @Test
+    void tokenWithoutVersionCountsAsVersionZero() {
+        String token = Jwts.builder()
+                .setSubject("user@example.com")
+                .claim("roles", List.of("CLIENT"))
+                .claim("id", 42L)
+                .setExpiration(Date.from(Instant.now().plusSeconds(3600)))
+                .signWith(Keys.hmacShaKeyFor(LEGACY_SECRET), SignatureAlgorithm.HS256)
+                .compact();
+
+        assertEquals(parseWithJjwt(token), codec.decode(token));
+        assertEquals(0, codec.decode(token).tokenVersion());
+    }
+
+    @Test
+    void rejectsATamperedPayload() {
+        String[] parts = legacyToken().compact().split("\\.");
+        String forgedPayload = ENCODER.encodeToString(new String(Base64.getUrlDecoder().decode(parts[1]),
+                StandardCharsets.UTF_8).replace("\"CLIENT\"", "\"RH\"").getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(SignatureException.class, () -> codec.decode(parts[0] + "." + forgedPayload + "." + parts[2]));
+    }
+
+    @Test
+    void rejectsATamperedSignature() {
+        String token = legacyToken().compact();
+        int signatureStart = token.lastIndexOf('.') + 1;
+        char first = token.charAt(signatureStart);
+        String tampered = token.substring(0, signatureStart) + (first == 'A' ? 'B' : 'A') + token.substring(signatureStart + 1);
+
+        assertThrows(SignatureException.class, () -> codec.decode(tampered));
+    }
+
+    @Test
+    void rejectsASignatureThatIsNotBase64Url() {
+        String token = legacyToken().compact();
+        String badEncoding = token.substring(0, token.lastIndexOf('.') + 1) + "not*base64";
+
+        assertThrows(SignatureException.class, () -> codec.decode(badEncoding));
+    }
+
+    @Test
+    void rejectsAnExpiredToken() {
+        String token = legacyToken()
+                .setIssuedAt(Date.from(Instant.now().minusSeconds(7200)))
+                .setExpiration(Date.from(Instant.now().minusSeconds(3600)))
+                .compact();
+
+        assertThrows(ExpiredJwtException.class, () -> codec.decode(token));
+    }
+
+    @Test
+    void leavesOtherHeadersAndExtraClaimsToJjwt() {
+        assertNull(codec.decode(legacyToken().setHeaderParam("typ", "JWT").compact()));
+        assertNull(codec.decode(legacyToken().setHeaderParam("kid", "legacy").compact()));
+        assertNull(codec.decode(legacyToken().claim("scope", "admin").compact()));
+    }
+
+    @Test
+    void leavesUnknownRolesToJjwt() {
+        assertNull(codec.decode(legacyToken().claim("roles", List.of("ROOT")).compact()));
+    }
+
+    @Test
+    void readsEscapesInStrings() {
+        long exp = Instant.now().plusSeconds(3600).getEpochSecond();
+        String token = sign("HmacSHA256", LEGACY_SECRET, "{\"alg\":\"HS256\"}",
+                "{\"sub\":\"J\\u00e9r\\u00f4me \\\"J\\\"@example.com\",\"roles\":[\"CLIENT\"],\"id\":7,\"exp\":" + exp + "}");
+
+        AuthenticatedUser decoded = codec.decode(token);
+
+        assertEquals("Jérôme \"J\"@example.com", decoded.email());
+        assertEquals(parseWithJjwt(token), decoded);
+    }
+
+    @Test
+    void longerAlgorithmsNeedALongEnoughKey() {
+        // 32 bytes: enough for HS256 only, so HS384 / HS512 tokens are left to JJWT, which refuses the weak key
+        byte[] key = new byte[32];
+        HmacJwtCodec shortKeyCodec = new HmacJwtCodec(key);
+        String payload = "{\"sub\":\"user@example.com\",\"id\":1}";
+
+        assertNull(shortKeyCodec.decode(sign("HmacSHA384", key, "{\"alg\":\"HS384\"}", payload)));
+        assertNull(shortKeyCodec.decode(sign("HmacSHA512", key, "{\"alg\":\"HS512\"}", payload)));
+        assertThrows(IllegalArgumentException.class, () -> new HmacJwtCodec(new byte[31]));
+    }
+
+    private static JwtBuilder legacyToken() {
+        Instant now = Instant.now();
+        return Jwts.builder()
+                .setSubject("user@example.com")
+                .claim("roles", List.of("ADMIN", "CLIENT"))
+                .claim("id", 42L)
+                .claim("ver", 3)
+                .setIssuedAt(Date.from(now))
+                .setExpiration(Date.from(now.plusSeconds(3600)))
+                .signWith(Keys.hmacShaKeyFor(LEGACY_SECRET), SignatureAlgorithm.HS256);
+    }
+
+    // The same mapping as the JJWT branch of JwtUtils.parseToken
+    private static AuthenticatedUser parseWithJjwt(String token) {
+        Claims claims = Jwts.parserBuilder().setSigningKey(LEGACY_SECRET).build().parseClaimsJws(token).getBody();
+        Set<Role> roles = EnumSet.noneOf(Role.class);
+        if (claims.get("roles") instanceof Collection<?> roleNames) {
+            roleNames.forEach(roleName -> roles.add(Role.valueOf(roleName.toString())));
+        }
+        Object id = claims.get("id");
+        Object version = claims.get("ver");
+        return new AuthenticatedUser(
+                id == null ? null : Long.parseLong(id.toString()),
+                claims.getSubject(),
+                roles,
+                version == null ? 0 : Integer.parseInt(version.toString()),
+                claims.getIssuedAt() == null ? null : claims.getIssuedAt().toInstant(),
+                claims.getExpiration() == null ? null : claims.getExpiration().toInstant());
+    }
+
+    private static String sign(String algorithm, byte[] key, String header, String payload) {
+        String signingInput = ENCODER.encodeToString(header.getBytes(StandardCharsets.UTF_8)) + "."
+                + ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        try {
+            Mac mac = Mac.getInstance(algorithm);
+            mac.init(new SecretKeySpec(key, algorithm));
+            return signingInput + "." + ENCODER.encodeToString(mac.doFinal(signingInput.getBytes(StandardCharsets.US_ASCII)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
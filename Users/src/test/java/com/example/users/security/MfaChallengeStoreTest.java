@@ -0,0 +1,67 @@
+package com.example.users.security;
+
+import com.example.users.Enum.Role;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MfaChallengeStoreTest {
+
+    private final MfaChallengeStore store = new MfaChallengeStore(Duration.ofMinutes(5), 1000, 3, new SimpleMeterRegistry());
+
+    @Test
+    void createdChallengeIsReturnedByItsId() {
+        String challengeId = store.create(42L, "user@example.com", Set.of(Role.CLIENT), 7, "SECRET");
+
+        assertEquals(new MfaChallenge(42L, "user@example.com", Set.of(Role.CLIENT), 7, "SECRET"), store.get(challengeId));
+        assertNotEquals(challengeId, store.create(42L, "user@example.com", Set.of(Role.CLIENT), 7, "SECRET"));
+    }
+
+    @Test
+    void unknownIdHasNoChallenge() {
+        assertNull(store.get("unknown"));
+        assertFalse(store.consume("unknown"));
+    }
+
+    @Test
+    void challengeIsDroppedAfterMaxAttempts() {
+        String challengeId = store.create(42L, "user@example.com", Set.of(Role.CLIENT), 0, "SECRET");
+
+        store.recordFailure(challengeId);
+        store.recordFailure(challengeId);
+        assertNotNull(store.get(challengeId));
+
+        store.recordFailure(challengeId);
+        assertNull(store.get(challengeId));
+        assertFalse(store.consume(challengeId));
+    }
+
+    @Test
+    void challengeCanOnlyBeConsumedOnce() {
+        String challengeId = store.create(42L, "user@example.com", Set.of(Role.CLIENT), 0, "SECRET");
+
+        assertTrue(store.consume(challengeId));
+        assertFalse(store.consume(challengeId));
+        assertNull(store.get(challengeId));
+    }
+
+    @Test
+    void failureOnAnUnknownIdIsIgnored() {
+        String challengeId = store.create(42L, "user@example.com", Set.of(Role.CLIENT), 0, "SECRET");
+
+        store.recordFailure("unknown");
+
+        store.recordFailure(challengeId);
+        store.recordFailure(challengeId);
+        assertNotNull(store.get(challengeId));
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.users.security;
+
+import com.example.users.Controllers.RestExceptionHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasswordHashingServiceTest {
+
+    // Holds every hash until released, so the pool can be filled deterministically
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PasswordHashingService hashingService;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        hashingService.shutdown();
+    }
+
+    @Test
+    void fullQueueIsAnsweredWith503AndRetryAfter() throws Exception {
+        // One thread, one queued hash
+        hashingService = service(Duration.ofSeconds(5), Duration.ofSeconds(3));
+        CompletableFuture<Boolean> running = CompletableFuture.supplyAsync(() -> hashingService.matches("a", "a"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> hashingService.matches("b", "b"));
+        awaitQueued();
+
+        PasswordHashingSaturatedException e = assertThrows(PasswordHashingSaturatedException.class,
+                () -> hashingService.matches("c", "c"));
+
+        ResponseEntity<?> response = new RestExceptionHandler().passwordHashingSaturated(e);
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("3", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(Map.of("message", e.getMessage()), response.getBody());
+        assertEquals(1.0, meterRegistry.get("password.hashing.rejected").counter().count());
+
+        // The accepted hashes still complete once the pool frees up
+        release.countDown();
+        assertTrue(running.get(5, TimeUnit.SECONDS));
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void hashWaitingLongerThanTheTimeoutIsRejected() throws Exception {
+        hashingService = service(Duration.ofMillis(100), Duration.ofSeconds(1));
+        CompletableFuture.runAsync(() -> hashingService.matches("a", "a"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        PasswordHashingSaturatedException e = assertThrows(PasswordHashingSaturatedException.class,
+                () -> hashingService.matches("b", "b"));
+        assertEquals(Duration.ofSeconds(1), e.getRetryAfter());
+    }
+
+    @Test
+    void backgroundRehashFailsFastWhenThePoolIsFull() throws Exception {
+        hashingService = service(Duration.ofSeconds(5), Duration.ofSeconds(1));
+        CompletableFuture.runAsync(() -> hashingService.matches("a", "a"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture.runAsync(() -> hashingService.matches("b", "b"));
+        awaitQueued();
+
+        assertTrue(hashingService.encodeInBackground("c").isCompletedExceptionally());
+    }
+
+    private PasswordHashingService service(Duration timeout, Duration retryAfter) {
+        PasswordEncoder blockingEncoder = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                await();
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                await();
+                return rawPassword.toString().equals(encodedPassword);
+            }
+        };
+        return new PasswordHashingService(blockingEncoder, meterRegistry, 1, 1, timeout, retryAfter);
+    }
+
+    private void await() {
+        started.countDown();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitQueued() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("executor.queued").tag("name", "password.hashing").gauge().value() < 1
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.users.security;
+
+import dev.samstevens.totp.code.DefaultCodeGenerator;
+import dev.samstevens.totp.code.HashingAlgorithm;
+import dev.samstevens.totp.exceptions.CodeGenerationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplayProtectedCodeVerifierTest {
+
+    // Base32 of the RFC 6238 SHA-1 test secret "12345678901234567890"
+    private static final String RFC_SECRET = "GEZDGNBVGY3TQOJQGEZDGNBVGY3TQOJQ";
+    private static final String OTHER_SECRET = "JBSWY3DPEHPK3PXPJBSWY3DPEHPK3PXP";
+
+    private final AtomicLong time = new AtomicLong();
+    private final ReplayProtectedCodeVerifier verifier = new ReplayProtectedCodeVerifier(time::get, 30, 1);
+
+    @Test
+    void acceptsRfc6238Sha1TestVectors() {
+        // RFC 6238 appendix B, last six of the eight digits
+        long[] times = {59L, 1111111109L, 1111111111L, 1234567890L, 2000000000L, 20000000000L};
+        String[] codes = {"287082", "081804", "050471", "005924", "279037", "353130"};
+
+        for (int i = 0; i < times.length; i++) {
+            time.set(times[i]);
+            assertTrue(verifier.isValidCode(RFC_SECRET, codes[i]), "T=" + times[i]);
+        }
+    }
+
+    @Test
+    void acceptsOneStepEitherSideOnly() {
+        // 287082 is the code of step 1 (T=59)
+        time.set(89);
+        assertTrue(new ReplayProtectedCodeVerifier(time::get, 30, 1).isValidCode(RFC_SECRET, "287082"));
+        time.set(0);
+        assertTrue(new ReplayProtectedCodeVerifier(time::get, 30, 1).isValidCode(RFC_SECRET, "287082"));
+
+        time.set(90);
+        assertFalse(new ReplayProtectedCodeVerifier(time::get, 30, 1).isValidCode(RFC_SECRET, "287082"));
+    }
+
+    @Test
+    void rejectsMalformedCodesAndSecrets() {
+        time.set(59);
+        assertFalse(verifier.isValidCode(RFC_SECRET, "28708"));
+        assertFalse(verifier.isValidCode(RFC_SECRET, "28708a"));
+        assertFalse(verifier.isValidCode(RFC_SECRET, null));
+        assertFalse(verifier.isValidCode(null, "287082"));
+        assertFalse(verifier.isValidCode("not base32!", "287082"));
+    }
+
+    @Test
+    void rejectsReplayOfTheSameCode() {
+        time.set(59);
+        assertTrue(verifier.isValidCode(RFC_SECRET, "287082"));
+        assertFalse(verifier.isValidCode(RFC_SECRET, "287082"));
+
+        // Still inside the window a step later
+        time.set(89);
+        assertFalse(verifier.isValidCode(RFC_SECRET, "287082"));
+    }
+
+    @Test
+    void rejectsAnOlderStepOnceANewerOneWasAccepted() throws CodeGenerationException {
+        time.set(10 * 30);
+        assertTrue(verifier.isValidCode(RFC_SECRET, code(RFC_SECRET, 11)));
+
+        assertFalse(verifier.isValidCode(RFC_SECRET, code(RFC_SECRET, 10)));
+        assertFalse(verifier.isValidCode(RFC_SECRET, code(RFC_SECRET, 9)));
+    }
+
+    @Test
+    void acceptsANewerStepAfterAnOlderOne() throws CodeGenerationException {
+        time.set(10 * 30);
+        assertTrue(verifier.isValidCode(RFC_SECRET, code(RFC_SECRET, 9)));
+        assertTrue(verifier.isValidCode(RFC_SECRET, code(RFC_SECRET, 10)));
+        assertTrue(verifier.isValidCode(RFC_SECRET, code(RFC_SECRET, 11)));
+    }
+
+    @Test
+    void secretsAreTrackedIndependently() throws CodeGenerationException {
+        time.set(10 * 30);
+        assertTrue(verifier.isValidCode(RFC_SECRET, code(RFC_SECRET, 10)));
+        assertTrue(verifier.isValidCode(OTHER_SECRET, code(OTHER_SECRET, 10)));
+        assertFalse(verifier.isValidCode(OTHER_SECRET, code(OTHER_SECRET, 10)));
+    }
+
+    @Test
+    void stepsThatLeftTheWindowAreSweptAsTimeRollsOver() throws CodeGenerationException {
+        time.set(10 * 30);
+        assertTrue(verifier.isValidCode(RFC_SECRET, code(RFC_SECRET, 10)));
+        assertTrue(verifier.isValidCode(OTHER_SECRET, code(OTHER_SECRET, 10)));
+        assertEquals(2, verifier.trackedSecrets());
+
+        // Many windows later only the secret used since is left, and replay protection still holds
+        for (long step = 11; step < 100; step++) {
+            time.set(step * 30);
+            assertTrue(verifier.isValidCode(RFC_SECRET, code(RFC_SECRET, step)), "step " + step);
+            assertFalse(verifier.isValidCode(RFC_SECRET, code(RFC_SECRET, step)), "replay at step " + step);
+        }
+        assertEquals(1, verifier.trackedSecrets());
+        assertTrue(verifier.isValidCode(OTHER_SECRET, code(OTHER_SECRET, 99)));
+    }
+
+    private static String code(String secret, long step) throws CodeGenerationException {
+        return new DefaultCodeGenerator(HashingAlgorithm.SHA1, 6).generate(secret, step);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.users.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlidingCountMinSketchTest {
+
+    // 15 one-minute buckets
+    private static final Duration WINDOW = Duration.ofMinutes(15);
+    private static final long MINUTE = 60_000;
+
+    @Test
+    void countsEventsPerKey() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(16, 1024, 4, 15, WINDOW);
+        long now = 1_000 * MINUTE;
+
+        for (int i = 1; i <= 5; i++) {
+            assertEquals(i, sketch.add("10.0.0.1", now));
+        }
+        sketch.add("10.0.0.2", now);
+
+        assertEquals(5, sketch.estimate("10.0.0.1", now));
+        assertEquals(1, sketch.estimate("10.0.0.2", now));
+        assertEquals(0, sketch.estimate("10.0.0.3", now));
+    }
+
+    @Test
+    void eventsDropOutOfTheWindowBucketByBucket() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(16, 1024, 4, 15, WINDOW);
+        long start = 1_000 * MINUTE;
+
+        sketch.add("user@example.com", start);
+        sketch.add("user@example.com", start + 5 * MINUTE);
+
+        assertEquals(2, sketch.estimate("user@example.com", start + 14 * MINUTE));
+        assertEquals(1, sketch.estimate("user@example.com", start + 15 * MINUTE));
+        assertEquals(0, sketch.estimate("user@example.com", start + 20 * MINUTE));
+    }
+
+    @Test
+    void reusedBucketIsResetBeforeCounting() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(16, 1024, 4, 15, WINDOW);
+        long start = 1_000 * MINUTE;
+
+        sketch.add("10.0.0.1", start);
+        sketch.add("10.0.0.1", start);
+
+        // Same slot one full window later: the old counts must not come back
+        assertEquals(1, sketch.add("10.0.0.1", start + 15 * MINUTE));
+    }
+
+    @Test
+    void neverUndercountsWhenKeysCollide() {
+        // 4 columns for 200 keys: collisions are certain, estimates may only go up
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(1, 4, 2, 15, WINDOW);
+        long now = 1_000 * MINUTE;
+        for (int key = 0; key < 200; key++) {
+            for (int i = 0; i <= key % 3; i++) {
+                sketch.add("key-" + key, now);
+            }
+        }
+
+        for (int key = 0; key < 200; key++) {
+            assertTrue(sketch.estimate("key-" + key, now) >= key % 3 + 1);
+        }
+    }
+
+    @Test
+    void singleStripeWorks() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(1, 1024, 4, 15, WINDOW);
+        long now = 1_000 * MINUTE;
+
+        sketch.add("10.0.0.1", now);
+
+        assertEquals(1, sketch.estimate("10.0.0.1", now));
+    }
+
+    @Test
+    void untilNextBucketIsTheRestOfTheCurrentBucket() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(16, 1024, 4, 15, WINDOW);
+
+        assertEquals(Duration.ofSeconds(45), sketch.untilNextBucket(1_000 * MINUTE + 15_000));
+    }
+
+    @Test
+    void rejectsDimensionsThatAreNotPowersOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new SlidingCountMinSketch(12, 1024, 4, 15, WINDOW));
+        assertThrows(IllegalArgumentException.class, () -> new SlidingCountMinSketch(16, 1000, 4, 15, WINDOW));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.users.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class TokenVersionTableTest {
+
+    @Test
+    void returnsTheVersionUntilTheEntryIsTooOld() {
+        TokenVersionTable table = new TokenVersionTable(4, 64);
+        table.raise(1L, 3, 100);
+
+        assertEquals(3, table.get(1L, 100));
+        assertEquals(TokenVersionTable.ABSENT, table.get(1L, 101));
+        assertEquals(TokenVersionTable.ABSENT, table.get(2L, 0));
+    }
+
+    @Test
+    void raiseNeverLowersAVersion() {
+        TokenVersionTable table = new TokenVersionTable(4, 64);
+        table.raise(1L, 5, 10);
+
+        // A load that raced with a bump: the version stays, the entry is still refreshed
+        table.raise(1L, 3, 20);
+        assertEquals(5, table.get(1L, 20));
+
+        table.raise(1L, 6, 30);
+        assertEquals(6, table.get(1L, 30));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void everyKeyIsFoundThroughItsProbeSequence() {
+        // One stripe, so all keys share one array and collide
+        TokenVersionTable table = new TokenVersionTable(1, 1000);
+        for (long userId = 1; userId <= 1000; userId++) {
+            table.raise(userId, (int) userId, 0);
+        }
+
+        assertEquals(1000, table.size());
+        for (long userId = 1; userId <= 1000; userId++) {
+            assertEquals((int) userId, table.get(userId, 0));
+        }
+        assertEquals(TokenVersionTable.ABSENT, table.get(1001L, 0));
+    }
+
+    @Test
+    void fullStripeIsClearedOnTheNextInsert() {
+        TokenVersionTable table = new TokenVersionTable(1, 4);
+        for (long userId = 1; userId <= 4; userId++) {
+            table.raise(userId, 1, 0);
+        }
+        assertEquals(4, table.size());
+
+        table.raise(5L, 2, 0);
+        assertEquals(1, table.size());
+        assertEquals(2, table.get(5L, 0));
+        assertEquals(TokenVersionTable.ABSENT, table.get(1L, 0));
+    }
+
+    @Test
+    void fullStripeStillAnswersForMissingKeys() {
+        TokenVersionTable table = new TokenVersionTable(1, 2);
+        table.raise(1L, 1, 0);
+        table.raise(2L, 1, 0);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(1),
+                () -> assertEquals(TokenVersionTable.ABSENT, table.get(3L, 0)));
+    }
+
+    @Test
+    void stripesAreIndependent() {
+        TokenVersionTable table = new TokenVersionTable(8, 8);
+        for (long userId = 1; userId <= 64; userId++) {
+            table.raise(userId, 1, 0);
+        }
+        // Each stripe holds one user, so at most one per stripe survives
+        assertEquals(8, table.size());
+    }
+
+    @Test
+    void rejectsAStripeCountThatIsNotAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenVersionTable(3, 64));
+        assertThrows(IllegalArgumentException.class, () -> new TokenVersionTable(0, 64));
+    }
+}
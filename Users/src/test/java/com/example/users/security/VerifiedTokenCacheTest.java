@@ -0,0 +1,59 @@
+package com.example.users.security;
+
+import com.example.users.Enum.Role;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class VerifiedTokenCacheTest {
+
+    private final VerifiedTokenCache cache = new VerifiedTokenCache(100, Duration.ofMinutes(15), new SimpleMeterRegistry());
+
+    @Test
+    void entryExpiresAtTheTokensExp() throws InterruptedException {
+        AuthenticatedUser principal = principal(Instant.now().plusMillis(500));
+        cache.put("token", principal);
+        assertEquals(principal, cache.get("token"));
+
+        Thread.sleep(700);
+
+        assertNull(cache.get("token"));
+    }
+
+    @Test
+    void entryNeverOutlivesTheMaximumTtl() throws InterruptedException {
+        VerifiedTokenCache shortLived = new VerifiedTokenCache(100, Duration.ofMillis(300), new SimpleMeterRegistry());
+        shortLived.put("token", principal(Instant.now().plus(Duration.ofHours(1))));
+
+        Thread.sleep(500);
+
+        assertNull(shortLived.get("token"));
+    }
+
+    @Test
+    void anotherTokenDoesNotHit() {
+        cache.put("token", principal(Instant.now().plus(Duration.ofHours(1))));
+
+        assertNull(cache.get("other-token"));
+        assertNull(cache.get("token "));
+    }
+
+    @Test
+    void expiredOrUnboundedTokensAreNotCached() {
+        cache.put("expired", principal(Instant.now().minusSeconds(1)));
+        cache.put("no-exp", principal(null));
+
+        assertNull(cache.get("expired"));
+        assertNull(cache.get("no-exp"));
+    }
+
+    private static AuthenticatedUser principal(Instant expiresAt) {
+        return new AuthenticatedUser(1L, "user@example.com", Set.of(Role.CLIENT), 0, Instant.now(), expiresAt);
+    }
+}